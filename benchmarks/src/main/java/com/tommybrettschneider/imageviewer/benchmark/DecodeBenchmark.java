@@ -0,0 +1,64 @@
+package com.tommybrettschneider.imageviewer.benchmark;
+
+import com.tommybrettschneider.imageviewer.ui.thumbnail.ThumbnailDecoder;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import net.coobird.thumbnailator.Thumbnails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of full images as done for the preview, and of thumbnails as done
+ * by <code>Thumbnail.run()</code> (without the on-disk thumbnail store).
+ *
+ * @author Tommy Brettschneider
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DecodeBenchmark {
+
+    private static final int THUMB_SIZE = 135;
+
+    @Param({"1024x768", "4000x3000"})
+    public String size;
+
+    @Param({"jpg", "png"})
+    public String format;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        final int[] wh = Fixtures.parseSize(size);
+        encoded = Fixtures.encode(Fixtures.createImage(wh[0], wh[1]), format);
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+
+    @Benchmark
+    public BufferedImage decodeThumbnail() throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded))) {
+            return Thumbnails.of(ThumbnailDecoder.read(iis, THUMB_SIZE, THUMB_SIZE)).size(THUMB_SIZE, THUMB_SIZE).asBufferedImage();
+        }
+    }
+}
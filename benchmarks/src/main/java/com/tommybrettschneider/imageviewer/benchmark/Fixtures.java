@@ -0,0 +1,74 @@
+package com.tommybrettschneider.imageviewer.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Generates the fixture images the benchmarks run against, so no sample
+ * pictures have to be checked in.
+ *
+ * @author Tommy Brettschneider
+ */
+final class Fixtures {
+
+    private Fixtures() {}
+
+    /**
+     * Parses a size given as <code>WIDTHxHEIGHT</code>.
+     * @param size the size, e.g. <code>4000x3000</code>
+     * @return width and height
+     */
+    static int[] parseSize(final String size) {
+        final String[] parts = size.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    /**
+     * Creates a photo-like image of the given size: smooth gradients for large
+     * areas plus noise and hard edges, so encoders and scalers do real work.
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the generated image
+     */
+    static BufferedImage createImage(final int width, final int height) {
+        final BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = img.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setPaint(new GradientPaint(0, 0, new Color(30, 90, 160), width, height, new Color(240, 200, 120)));
+        g2d.fillRect(0, 0, width, height);
+        final Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            g2d.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 128));
+            g2d.fillOval(random.nextInt(width), random.nextInt(height), random.nextInt(width / 4 + 1), random.nextInt(height / 4 + 1));
+        }
+        g2d.dispose();
+        for (int y = 0; y < height; y += 2) {
+            for (int x = (y / 2) % 2; x < width; x += 3) {
+                img.setRGB(x, y, img.getRGB(x, y) ^ (random.nextInt(32) * 0x010101));
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Encodes an image in the given format.
+     * @param img the image
+     * @param format the informal format name, e.g. <code>jpg</code> or <code>png</code>
+     * @return the encoded image
+     * @throws IOException if the image cannot be encoded
+     */
+    static byte[] encode(final BufferedImage img, final String format) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, format, out)) {
+            throw new IOException("No ImageWriter found for " + format);
+        }
+        return out.toByteArray();
+    }
+}
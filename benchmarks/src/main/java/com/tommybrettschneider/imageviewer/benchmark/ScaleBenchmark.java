@@ -0,0 +1,121 @@
+package com.tommybrettschneider.imageviewer.benchmark;
+
+import com.tommybrettschneider.imageviewer.ui.preview.ImageManager;
+import com.tommybrettschneider.imageviewer.ui.preview.Resampler;
+import com.tommybrettschneider.imageviewer.ui.preview.ScalingQuality;
+import com.tommybrettschneider.imageviewer.util.Images;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import net.coobird.thumbnailator.Thumbnails;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion and downscaling of decoded images: the compatible image copy made
+ * after decoding, the legacy <code>getScaledInstance(SCALE_SMOOTH)</code>,
+ * <code>ImageManager</code> with its <code>Resampler</code>, the multi-step
+ * scaler of <code>Images</code> and Thumbnailator.
+ *
+ * @author Tommy Brettschneider
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ScaleBenchmark {
+
+    @Param({"1024x768", "4000x3000"})
+    public String size;
+
+    /**
+     * The box to scale into: a preview pane and a thumbnail.
+     */
+    @Param({"800x600", "135x135"})
+    public String target;
+
+    private BufferedImage decoded;
+    private BufferedImage compatible;
+    private GraphicsConfiguration gc;
+    private ImageManager imageManager;
+    private Images images;
+    private int targetWidth;
+    private int targetHeight;
+
+    @Setup
+    public void setUp() throws IOException {
+        final int[] wh = Fixtures.parseSize(size);
+        // use the image type the JPEG reader produces rather than the generator's
+        decoded = ImageIO.read(new ByteArrayInputStream(Fixtures.encode(Fixtures.createImage(wh[0], wh[1]), "jpg")));
+        gc = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics().getDeviceConfiguration();
+        // the preview scales the compatible copy ImageManager makes after decoding
+        compatible = Images.toCompatibleImage(decoded, gc);
+        imageManager = new ImageManager();
+        images = new Images();
+        final int[] box = Fixtures.parseSize(target);
+        final double scale = Math.min((double) box[0] / wh[0], (double) box[1] / wh[1]);
+        targetWidth = (int) (wh[0] * scale);
+        targetHeight = (int) (wh[1] * scale);
+    }
+
+    @Benchmark
+    public BufferedImage toCompatibleImage() {
+        return Images.toCompatibleImage(decoded, gc);
+    }
+
+    @Benchmark
+    public BufferedImage getScaledInstanceSmooth() {
+        final BufferedImage img = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g2d = img.createGraphics();
+        g2d.drawImage(compatible.getScaledInstance(targetWidth, targetHeight, Image.SCALE_SMOOTH), 0, 0, targetWidth, targetHeight, null);
+        g2d.dispose();
+        return img;
+    }
+
+    @Benchmark
+    public BufferedImage proportionalScale() {
+        return imageManager.proportionalScale(compatible, targetWidth, targetHeight);
+    }
+
+    @Benchmark
+    public BufferedImage multiStepBilinear() {
+        return images.getScaledInstance(compatible, targetWidth, targetHeight, RenderingHints.VALUE_INTERPOLATION_BILINEAR, true);
+    }
+
+    @Benchmark
+    public BufferedImage resampleFast() {
+        return Resampler.resize(compatible, targetWidth, targetHeight, ScalingQuality.FAST);
+    }
+
+    @Benchmark
+    public BufferedImage resampleBalanced() {
+        return Resampler.resize(compatible, targetWidth, targetHeight, ScalingQuality.BALANCED);
+    }
+
+    @Benchmark
+    public BufferedImage resampleBest() {
+        return Resampler.resize(compatible, targetWidth, targetHeight, ScalingQuality.BEST);
+    }
+
+    @Benchmark
+    public BufferedImage thumbnailator() throws IOException {
+        return Thumbnails.of(compatible).size(targetWidth, targetHeight).asBufferedImage();
+    }
+}
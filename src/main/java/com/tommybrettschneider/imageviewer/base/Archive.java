@@ -0,0 +1,221 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import com.tommybrettschneider.imageviewer.loader.ImageLoaders;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import javax.imageio.stream.ImageInputStream;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * A container file whose entries are walked, see {@link ContainerFormat}.
+ * Entries are described as <code>ZipEntry</code> regardless of the format, so
+ * filtering and sorting work the same for all containers.
+ *
+ * Entries which are containers themselves are opened with
+ * {@link #openContainer(ZipEntry)}: they are extracted once into a temporary
+ * file, see {@link #extract(String, String, ContentSupplier)}.
+ *
+ * An archive may hold the file open or temporary files; it is to be closed
+ * once it is no longer shown.
+ *
+ * @author Tommy Brettschneider
+ */
+public abstract class Archive extends Walkable<File, ZipEntry> implements Closeable {
+
+    // guarded by itself
+    private static final Map<String, Extraction> EXTRACTED = new HashMap<>();
+
+    private final String name;
+    // the keys of the extractions used by this archive, guarded by this
+    private final List<String> extractions = new ArrayList<>();
+    private boolean closed;
+
+    /**
+     * Supplies the content of a file to extract.
+     */
+    @FunctionalInterface
+    protected interface ContentSupplier {
+
+        InputStream open() throws IOException;
+    }
+
+    protected Archive(final File file, final String name) {
+        super(file);
+        this.name = name;
+        this.filter = ImageFilter.zipEntries();
+    }
+
+    /**
+     * Gets the name of this container, its path or, for nested containers,
+     * the path of the outermost container followed by the names of the
+     * entries leading to this one, separated by <code>!</code>.
+     * @return the name of this container
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Opens a stream on the content of an entry.
+     * @param entry an entry listed by {@link #getChildren()}
+     * @return the stream, to be closed by the caller
+     * @throws IOException if the entry cannot be read
+     */
+    public abstract InputStream getInputStream(ZipEntry entry) throws IOException;
+
+    /**
+     * Opens an image stream on the content of an entry. Unless overridden by
+     * formats with random access to their entries, the entry is cached in
+     * memory as far as the reader consumes it.
+     * @param entry an entry listed by {@link #getChildren()}
+     * @return the stream, to be closed by the caller
+     * @throws IOException if the entry cannot be read
+     */
+    public ImageInputStream getImageInputStream(final ZipEntry entry) throws IOException {
+        return ImageLoaders.cache(getInputStream(entry));
+    }
+
+    /**
+     * Checks if an entry is a container of any registered format.
+     * @param entry the entry
+     * @return <code>true</code> if the entry can be opened with {@link #openContainer(ZipEntry)}
+     */
+    public boolean isContainer(final ZipEntry entry) {
+        return !entry.isDirectory() && ContainerFormats.getInstance().isContainer(entry.getName());
+    }
+
+    /**
+     * Opens an entry which is a container itself.
+     * @param entry the entry
+     * @return the nested container, which keeps the extracted entry until it is closed
+     * @throws IOException if the entry is no container or cannot be read
+     */
+    public Archive openContainer(final ZipEntry entry) throws IOException {
+        final String nestedName = getName() + '!' + entry.getName();
+        final String key = nestedName + '|' + entry.getTime() + '|' + entry.getSize();
+        // keep the full suffix, e.g. .tar.gz, so the format is recognised
+        final String baseName = FilenameUtils.getName(entry.getName());
+        final int dot = baseName.indexOf('.');
+        final File file = acquire(key, dot > 0 ? baseName.substring(dot) : null, () -> getInputStream(entry));
+        final Archive container;
+        try {
+            container = ContainerFormats.getInstance().open(file, entry.getName(), nestedName);
+        } catch (IOException | RuntimeException e) {
+            release(key);
+            throw e;
+        }
+        container.addExtraction(key);
+        return container;
+    }
+
+    /**
+     * Extracts content into a temporary file. The file is shared by all
+     * archives extracting the same key and deleted once the last of them is
+     * closed.
+     * @param key identifies the content, including e.g. the time of last
+     * modification and size of the file it comes from
+     * @param suffix the suffix of the temporary file, may be <code>null</code>
+     * @param content opens the content, called only if it has not been extracted yet
+     * @return the extracted file
+     * @throws IOException if the content cannot be extracted or this archive has been closed
+     */
+    protected final File extract(final String key, final String suffix, final ContentSupplier content) throws IOException {
+        final File file = acquire(key, suffix, content);
+        addExtraction(key);
+        return file;
+    }
+
+    private void addExtraction(final String key) throws IOException {
+        synchronized (this) {
+            if (!closed) {
+                extractions.add(key);
+                return;
+            }
+        }
+        release(key);
+        throw new IOException(getName() + " has been closed");
+    }
+
+    private static File acquire(final String key, final String suffix, final ContentSupplier content) throws IOException {
+        final Extraction extraction;
+        synchronized (EXTRACTED) {
+            extraction = EXTRACTED.computeIfAbsent(key, k -> new Extraction());
+            extraction.users++;
+        }
+        try {
+            return extraction.get(suffix, content);
+        } catch (IOException | RuntimeException e) {
+            release(key);
+            throw e;
+        }
+    }
+
+    private static void release(final String key) {
+        final Extraction extraction;
+        synchronized (EXTRACTED) {
+            extraction = EXTRACTED.get(key);
+            if (extraction == null || --extraction.users > 0) {
+                return;
+            }
+            EXTRACTED.remove(key);
+        }
+        extraction.delete();
+    }
+
+    /**
+     * Releases the resources held by this archive and deletes the temporary
+     * files no other archive uses. Streams opened on its entries may fail
+     * afterwards.
+     * @throws IOException if the archive cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        final List<String> keys;
+        synchronized (this) {
+            closed = true;
+            keys = new ArrayList<>(extractions);
+            extractions.clear();
+        }
+        keys.forEach(Archive::release);
+    }
+
+    /**
+     * A temporary file extracted on first use, along with the number of
+     * archives using it.
+     */
+    private static final class Extraction {
+
+        private int users;
+        private File file;
+
+        synchronized File get(final String suffix, final ContentSupplier content) throws IOException {
+            if (file == null) {
+                final File extracted = File.createTempFile("imageviewer", suffix);
+                extracted.deleteOnExit();
+                try (InputStream in = content.open()) {
+                    java.nio.file.Files.copy(in, extracted.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException | RuntimeException e) {
+                    extracted.delete();
+                    throw e;
+                }
+                file = extracted;
+            }
+            return file;
+        }
+
+        synchronized void delete() {
+            if (file != null) {
+                file.delete();
+                file = null;
+            }
+        }
+    }
+}
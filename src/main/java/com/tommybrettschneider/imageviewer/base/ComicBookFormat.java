@@ -0,0 +1,46 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+import com.tommybrettschneider.imageviewer.util.NaturalSortKey;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Comic book archives (cbz), zip archives of the pages of a comic. The pages
+ * are walked in the natural order of their names, page2 before page10, rather
+ * than in the order they were added to the archive.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ComicBookFormat implements ContainerFormat {
+
+    @Override
+    public boolean accepts(final String name) {
+        return FilenameUtils.isExtension(name.toLowerCase(Locale.ROOT), "cbz");
+    }
+
+    @Override
+    public Archive open(final File file, final String name) throws IOException {
+        return new ZipFile(file, name) {
+            @Override
+            public Stream<ZipEntry> getChildren() {
+                return sortPages(super.getChildren());
+            }
+        };
+    }
+
+    /**
+     * Sorts the pages of a comic in the natural order of their names.
+     * @param pages the entries of the archive
+     * @return the entries in page order
+     */
+    static Stream<ZipEntry> sortPages(final Stream<ZipEntry> pages) {
+        try (Stream<ZipEntry> entries = pages) {
+            return NaturalSortKey.sort(entries.collect(Collectors.toList()), ZipEntry::getName).stream();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A format of archives whose entries are walked like the files of a
+ * directory, see {@link ContainerFormats}. Implementations are found with the
+ * <code>ServiceLoader</code>, so further formats can be added by listing them
+ * in <code>META-INF/services/com.tommybrettschneider.imageviewer.base.ContainerFormat</code>.
+ *
+ * @author Tommy Brettschneider
+ */
+public interface ContainerFormat {
+
+    /**
+     * Checks by its name if a file or archive entry is a container of this format.
+     * @param name the file or entry name
+     * @return <code>true</code> if this format opens it
+     */
+    public boolean accepts(String name);
+
+    /**
+     * Opens a container of this format. Only as much of the container is read
+     * as is needed to list its entries.
+     * @param file the container
+     * @param name the name of the container as shown to the user and used in
+     * cache keys, e.g. the path of the file
+     * @return the container
+     * @throws IOException if the container cannot be read
+     */
+    public Archive open(File file, String name) throws IOException;
+}
@@ -0,0 +1,93 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the {@link ContainerFormat}s, loaded with the
+ * <code>ServiceLoader</code>. Zip archives, comic book archives (cbz) and tar
+ * archives, optionally gzip compressed, are supported out of the box.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class ContainerFormats {
+
+    private static ContainerFormats instance;
+
+    private final List<ContainerFormat> formats = new CopyOnWriteArrayList<>();
+
+    public static synchronized ContainerFormats getInstance() {
+        if (instance == null) {
+            instance = new ContainerFormats();
+        }
+        return instance;
+    }
+
+    private ContainerFormats() {
+        ServiceLoader.load(ContainerFormat.class, ContainerFormat.class.getClassLoader()).forEach(formats::add);
+    }
+
+    /**
+     * Registers a format, taking precedence over the formats registered before.
+     * @param format the format
+     */
+    public void register(final ContainerFormat format) {
+        formats.add(0, format);
+    }
+
+    /**
+     * Gets the format of a file or archive entry by its name.
+     * @param name the file or entry name
+     * @return the format or <code>null</code> if the name denotes no container
+     */
+    public ContainerFormat getFormat(final String name) {
+        for (ContainerFormat format : formats) {
+            if (format.accepts(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public boolean isContainer(final String name) {
+        return getFormat(name) != null;
+    }
+
+    /**
+     * Checks if the given file is a container of any registered format.
+     * @param file the file
+     * @return <code>true</code> if the file is a container
+     */
+    public boolean isContainer(final File file) {
+        return isContainer(file.getName()) && file.isFile();
+    }
+
+    /**
+     * Opens a container file.
+     * @param file the container
+     * @return the container
+     * @throws IOException if the file is no container or cannot be read
+     */
+    public Archive open(final File file) throws IOException {
+        return open(file, file.getName(), file.getPath());
+    }
+
+    /**
+     * Opens a container, using the format the given name denotes.
+     * @param file the container
+     * @param formatName the name to choose the format by
+     * @param name the name of the container used in cache keys
+     * @return the container
+     * @throws IOException if the file is no container or cannot be read
+     */
+    Archive open(final File file, final String formatName, final String name) throws IOException {
+        final ContainerFormat format = getFormat(formatName);
+        if (format == null) {
+            throw new IOException("Unknown container format: " + formatName);
+        }
+        return format.open(file, name);
+    }
+}
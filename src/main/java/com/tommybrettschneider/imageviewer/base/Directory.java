@@ -1,7 +1,9 @@
 package com.tommybrettschneider.imageviewer.base;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 /**
@@ -9,17 +11,29 @@ import java.util.stream.Stream;
  * @author Tommy Brettschneider
  */
 public class Directory extends Walkable<File, File> {
+
+    private final static Logger LOGGER = Logger.getLogger(Directory.class.getName());
     
     public Directory(final File file) {
         if (file.isDirectory()) {
             this.source = file;
+            this.filter = ImageFilter.files();
         } else {
             throw new IllegalArgumentException(file.getAbsolutePath() + " is not a directory.");
         }
     }
     
+    /**
+     * Lists the directory lazily via a <code>DirectoryStream</code>, so entries
+     * are available before the whole directory has been read.
+     */
     @Override
     public Stream<File> getChildren() {
-        return Arrays.stream(getSource().listFiles()).parallel();
-    }    
+        try {
+            return java.nio.file.Files.list(getSource().toPath()).map(Path::toFile);
+        } catch (IOException e) {
+            LOGGER.warning(e.getMessage());
+            return Stream.empty();
+        }
+    }
 }
@@ -0,0 +1,338 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Watches directories for created, deleted and modified entries with a
+ * <code>WatchService</code>.
+ *
+ * Events are coalesced per directory: they are handed over once no further
+ * event arrived for the delay given by the system property
+ * <code>imageviewer.watch.delay</code> (milliseconds), but at the latest after
+ * {@link #MAX_DELAY_MILLIS}, so a burst of writes such as a camera import
+ * results in a few changes rather than thousands. Within a change an entry is
+ * reported only once: an entry created and modified is reported as created,
+ * one created and deleted again not at all. When a watched directory itself is
+ * deleted, the events still pending are handed over at once in a change
+ * marked as gone, and the directory is no longer watched.
+ *
+ * Listeners are called on the watcher's thread.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class DirectoryWatcher {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectoryWatcher.class.getName());
+
+    private static final String PROPERTY_DELAY = "imageviewer.watch.delay";
+
+    /**
+     * Maximum time events are held back while more keep arriving.
+     */
+    public static final long MAX_DELAY_MILLIS = 2000;
+
+    private static DirectoryWatcher instance;
+
+    private final long delayNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(PROPERTY_DELAY, 300L));
+    private final long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS);
+    private final Map<Path, Watch> watches = new HashMap<>();
+    private final Map<WatchKey, Watch> watchesByKey = new HashMap<>();
+    private final List<Watch> gone = new ArrayList<>();
+    private WatchService watchService;
+
+    /**
+     * Receives the coalesced changes of a watched directory.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        public void directoryChanged(Change change);
+    }
+
+    /**
+     * A registration of a listener, to be closed when the directory need not
+     * be watched anymore.
+     */
+    public interface Registration extends AutoCloseable {
+
+        @Override
+        public void close();
+    }
+
+    /**
+     * The changes of a directory since the last change handed over.
+     */
+    public static final class Change {
+
+        private final Path directory;
+        private final Set<Path> created;
+        private final Set<Path> deleted;
+        private final Set<Path> modified;
+        private final boolean overflow;
+        private final boolean gone;
+
+        private Change(final Path directory, final Set<Path> created, final Set<Path> deleted, final Set<Path> modified,
+                final boolean overflow, final boolean gone) {
+            this.directory = directory;
+            this.created = Collections.unmodifiableSet(created);
+            this.deleted = Collections.unmodifiableSet(deleted);
+            this.modified = Collections.unmodifiableSet(modified);
+            this.overflow = overflow;
+            this.gone = gone;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public Set<Path> getCreated() {
+            return created;
+        }
+
+        public Set<Path> getDeleted() {
+            return deleted;
+        }
+
+        public Set<Path> getModified() {
+            return modified;
+        }
+
+        /**
+         * Checks if events have been lost, in which case the directory has to
+         * be listed again.
+         * @return <code>true</code> if the reported entries are incomplete
+         */
+        public boolean isOverflow() {
+            return overflow;
+        }
+
+        /**
+         * Checks if the directory has been deleted or cannot be watched
+         * anymore, in which case this is its last change.
+         * @return <code>true</code> if the directory is gone
+         */
+        public boolean isGone() {
+            return gone;
+        }
+    }
+
+    private enum Kind {
+        CREATED, DELETED, MODIFIED
+    }
+
+    /**
+     * A watched directory with its listeners and the events not handed over yet.
+     */
+    private static final class Watch {
+
+        private final Path directory;
+        private final WatchKey key;
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        private final Map<Path, Kind> pending = new LinkedHashMap<>();
+        private boolean overflow;
+        private long firstEvent;
+        private long lastEvent;
+
+        Watch(final Path directory, final WatchKey key) {
+            this.directory = directory;
+            this.key = key;
+        }
+
+        void add(final Path entry, final WatchEvent.Kind<?> kind) {
+            final Kind previous = pending.get(entry);
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                // deleted and created again: replaced
+                pending.put(entry, previous == null ? Kind.CREATED : previous == Kind.DELETED ? Kind.MODIFIED : previous);
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                if (previous == Kind.CREATED) {
+                    pending.remove(entry);
+                } else {
+                    pending.put(entry, Kind.DELETED);
+                }
+            } else if (previous == null) {
+                pending.put(entry, Kind.MODIFIED);
+            }
+        }
+
+        boolean hasPending() {
+            return overflow || !pending.isEmpty();
+        }
+
+        Change drain(final boolean gone) {
+            final Set<Path> created = new LinkedHashSet<>();
+            final Set<Path> deleted = new LinkedHashSet<>();
+            final Set<Path> modified = new LinkedHashSet<>();
+            pending.forEach((entry, kind) -> {
+                switch (kind) {
+                    case CREATED:
+                        created.add(entry);
+                        break;
+                    case DELETED:
+                        deleted.add(entry);
+                        break;
+                    default:
+                        modified.add(entry);
+                }
+            });
+            final Change change = new Change(directory, created, deleted, modified, overflow, gone);
+            pending.clear();
+            overflow = false;
+            return change;
+        }
+    }
+
+    public static synchronized DirectoryWatcher getInstance() {
+        if (instance == null) {
+            instance = new DirectoryWatcher();
+        }
+        return instance;
+    }
+
+    private DirectoryWatcher() {
+    }
+
+    /**
+     * Starts watching a directory.
+     * @param directory the directory
+     * @param listener receives the changes of the directory
+     * @return the registration, to be closed to stop watching
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized Registration watch(final Path directory, final Listener listener) throws IOException {
+        if (watchService == null) {
+            watchService = FileSystems.getDefault().newWatchService();
+            final Thread thread = new Thread(this::run, "directory-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        final Path key = directory.toAbsolutePath().normalize();
+        Watch watch = watches.get(key);
+        if (watch == null) {
+            watch = new Watch(key, key.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY));
+            watches.put(key, watch);
+            watchesByKey.put(watch.key, watch);
+        }
+        watch.listeners.add(listener);
+        final Watch registered = watch;
+        return () -> unwatch(registered, listener);
+    }
+
+    private synchronized void unwatch(final Watch watch, final Listener listener) {
+        watch.listeners.remove(listener);
+        if (watch.listeners.isEmpty() && watches.get(watch.directory) == watch) {
+            watch.key.cancel();
+            watches.remove(watch.directory);
+            watchesByKey.remove(watch.key);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.poll(getTimeout(), TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    collect(key);
+                    // take all keys signalled meanwhile before handing anything over
+                    for (WatchKey next = watchService.poll(); next != null; next = watchService.poll()) {
+                        collect(next);
+                    }
+                }
+                deliver();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.warning(e.getMessage());
+        }
+    }
+
+    private synchronized void collect(final WatchKey key) {
+        final Watch watch = watchesByKey.get(key);
+        final List<WatchEvent<?>> events = key.pollEvents();
+        if (watch != null) {
+            final long now = System.nanoTime();
+            if (!watch.hasPending()) {
+                watch.firstEvent = now;
+            }
+            watch.lastEvent = now;
+            for (WatchEvent<?> event : events) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    watch.overflow = true;
+                } else {
+                    watch.add(watch.directory.resolve((Path) event.context()), event.kind());
+                }
+            }
+        }
+        if (!key.reset() && watch != null) {
+            // the directory is gone, its listeners learn that with the next delivery
+            watches.remove(watch.directory);
+            watchesByKey.remove(key);
+            gone.add(watch);
+        }
+    }
+
+    /**
+     * Hands over the changes of all directories gone and of all directories
+     * whose events have settled.
+     */
+    private void deliver() {
+        final Map<Watch, Change> due = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Watch watch : gone) {
+                due.put(watch, watch.drain(true));
+            }
+            gone.clear();
+            final long now = System.nanoTime();
+            for (Iterator<Watch> it = watches.values().iterator(); it.hasNext();) {
+                final Watch watch = it.next();
+                if (watch.hasPending() && (now - watch.lastEvent >= delayNanos || now - watch.firstEvent >= maxDelayNanos)) {
+                    due.put(watch, watch.drain(false));
+                }
+            }
+        }
+        due.forEach((watch, change) -> {
+            for (Listener listener : watch.listeners) {
+                try {
+                    listener.directoryChanged(change);
+                } catch (RuntimeException e) {
+                    LOGGER.warning(e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the time until the next pending change is due.
+     */
+    private synchronized long getTimeout() {
+        long timeout = TimeUnit.HOURS.toNanos(1);
+        final long now = System.nanoTime();
+        for (Watch watch : watches.values()) {
+            if (watch.hasPending()) {
+                final long due = Math.min(watch.lastEvent + delayNanos, watch.firstEvent + maxDelayNanos);
+                timeout = Math.min(timeout, Math.max(0, due - now));
+            }
+        }
+        return timeout;
+    }
+}
@@ -0,0 +1,62 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Size and content statistics of a folder and its subfolders, as computed by
+ * the {@link FolderStatisticsService}. While the folder is being walked the
+ * statistics are partial totals, see {@link #isComplete()}.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class FolderStatistics {
+
+    private final long bytes;
+    private final int files;
+    private final int images;
+    private final Map<String, Integer> formats;
+    private final boolean complete;
+
+    FolderStatistics(final long bytes, final int files, final int images, final Map<String, Integer> formats, final boolean complete) {
+        this.bytes = bytes;
+        this.files = files;
+        this.images = images;
+        this.formats = Collections.unmodifiableMap(new TreeMap<>(formats));
+        this.complete = complete;
+    }
+
+    /**
+     * @return the total size of all files in bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * @return the number of files any installed <code>ImageReader</code> handles by their suffix
+     */
+    public int getImages() {
+        return images;
+    }
+
+    /**
+     * Gets the number of images per format.
+     * @return the number of images by lower case file suffix
+     */
+    public Map<String, Integer> getFormats() {
+        return formats;
+    }
+
+    /**
+     * @return <code>false</code> if these are partial totals of a folder still being walked
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,238 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Computes the {@link FolderStatistics} of folders in the background.
+ *
+ * Folders are walked with <code>Files.walkFileTree</code> on a pool of its
+ * own, whose size is given by the system property
+ * <code>imageviewer.foldersize.threads</code>, so slow network shares never
+ * hold up decoding. Partial totals are reported while walking. The totals of
+ * the files directly within each folder are remembered together with the
+ * folder's modification time, for as many folders as the system property
+ * <code>imageviewer.foldersize.cache</code> allows; walking a folder again
+ * then only reads the modification times of its subfolders. Files modified in
+ * place do not change their folder's modification time, so their new size is
+ * only seen once the folder itself changes.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class FolderStatisticsService {
+
+    private static final Logger LOGGER = Logger.getLogger(FolderStatisticsService.class.getName());
+
+    private static final String PROPERTY_THREADS = "imageviewer.foldersize.threads";
+    private static final String PROPERTY_CACHE = "imageviewer.foldersize.cache";
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static FolderStatisticsService instance;
+
+    private final ExecutorService executor;
+    private final Map<Path, Totals> folders;
+
+    public static synchronized FolderStatisticsService getInstance() {
+        if (instance == null) {
+            instance = new FolderStatisticsService(Integer.getInteger(PROPERTY_THREADS, 2), Integer.getInteger(PROPERTY_CACHE, 10000));
+        }
+        return instance;
+    }
+
+    private FolderStatisticsService(final int threads, final int maxFolders) {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            final Thread t = new Thread(r, "folder-statistics");
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+        this.folders = new LinkedHashMap<Path, Totals>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Totals> eldest) {
+                return size() > maxFolders;
+            }
+        };
+    }
+
+    /**
+     * Computes the statistics of a folder and its subfolders in the background.
+     * @param folder the folder
+     * @param listener receives partial totals while the folder is walked and
+     * the complete statistics at the end, on the walking thread
+     * @return a handle to cancel the computation, e.g. when another folder is selected
+     */
+    public Future<?> compute(final File folder, final Consumer<FolderStatistics> listener) {
+        return executor.submit(() -> {
+            final Walk walk = new Walk(listener);
+            try {
+                Files.walkFileTree(folder.toPath(), walk);
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+                return;
+            }
+            if (!Thread.currentThread().isInterrupted()) {
+                listener.accept(walk.total.toStatistics(true));
+            }
+        });
+    }
+
+    private Totals getTotals(final Path folder) {
+        synchronized (folders) {
+            return folders.get(folder);
+        }
+    }
+
+    private void putTotals(final Path folder, final Totals totals) {
+        synchronized (folders) {
+            folders.put(folder, totals);
+        }
+    }
+
+    /**
+     * Totals of a set of files; for a folder the files directly within it,
+     * together with its subfolders and modification time.
+     */
+    private static final class Totals {
+
+        private final long lastModified;
+        private final List<Path> subfolders = new ArrayList<>();
+        private final Map<String, Integer> formats = new HashMap<>();
+        private long bytes;
+        private int files;
+        private int images;
+
+        Totals(final long lastModified) {
+            this.lastModified = lastModified;
+        }
+
+        void addFile(final String name, final long size) {
+            bytes += size;
+            files++;
+            if (ImageFilter.hasImageSuffix(name)) {
+                images++;
+                formats.merge(FilenameUtils.getExtension(name).toLowerCase(Locale.ROOT), 1, Integer::sum);
+            }
+        }
+
+        void addAll(final Totals totals) {
+            bytes += totals.bytes;
+            files += totals.files;
+            images += totals.images;
+            totals.formats.forEach((format, count) -> formats.merge(format, count, Integer::sum));
+        }
+
+        FolderStatistics toStatistics(final boolean complete) {
+            return new FolderStatistics(bytes, files, images, formats, complete);
+        }
+    }
+
+    /**
+     * Walks a folder, summing up its files and remembering the totals of
+     * every folder completely walked.
+     */
+    private final class Walk extends SimpleFileVisitor<Path> {
+
+        private final Consumer<FolderStatistics> listener;
+        private final Totals total = new Totals(0);
+        private final Deque<Totals> folderTotals = new ArrayDeque<>();
+        private final Deque<Boolean> remembered = new ArrayDeque<>();
+        private long reported = System.nanoTime();
+
+        Walk(final Consumer<FolderStatistics> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+            if (Thread.currentThread().isInterrupted()) {
+                return FileVisitResult.TERMINATE;
+            }
+            if (!folderTotals.isEmpty() && !remembered.peek()) {
+                folderTotals.peek().subfolders.add(dir);
+            }
+            final long lastModified = attrs.lastModifiedTime().toMillis();
+            final Totals known = getTotals(dir);
+            if (known != null && known.lastModified == lastModified) {
+                total.addAll(known);
+                report();
+                folderTotals.push(known);
+                remembered.push(Boolean.TRUE);
+                try {
+                    for (Path subfolder : known.subfolders) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        Files.walkFileTree(subfolder, this);
+                    }
+                } finally {
+                    folderTotals.pop();
+                    remembered.pop();
+                }
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            folderTotals.push(new Totals(lastModified));
+            remembered.push(Boolean.FALSE);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+            if (attrs.isRegularFile()) {
+                final String name = file.getFileName().toString();
+                total.addFile(name, attrs.size());
+                if (!folderTotals.isEmpty()) {
+                    folderTotals.peek().addFile(name, attrs.size());
+                }
+                report();
+            }
+            return Thread.currentThread().isInterrupted() ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(final Path file, final IOException exc) {
+            // e.g. a folder without read permission
+            LOGGER.fine(exc.getMessage());
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) {
+            final Totals totals = folderTotals.pop();
+            remembered.pop();
+            if (exc == null && !Thread.currentThread().isInterrupted()) {
+                putTotals(dir, totals);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void report() {
+            final long now = System.nanoTime();
+            if (now - reported >= REPORT_INTERVAL_NANOS) {
+                reported = now;
+                listener.accept(total.toStatistics(false));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Filters applied to the children of a {@link Walkable}, so that only entries
+ * which can be shown as images get a thumbnail.
+ *
+ * Entries are accepted by their file name suffix, checked against the suffixes
+ * of the installed <code>ImageReader</code>s. If the system property
+ * <code>imageviewer.filter.sniff</code> is <code>true</code>, files with an
+ * unknown suffix are additionally checked by their leading bytes.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class ImageFilter {
+
+    private final static Logger LOGGER = Logger.getLogger(ImageFilter.class.getName());
+
+    private static final String PROPERTY_SNIFF = "imageviewer.filter.sniff";
+
+    private static final Set<String> SUFFIXES = Arrays.stream(ImageIO.getReaderFileSuffixes())
+            .map(suffix -> suffix.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toSet());
+
+    private ImageFilter() {}
+
+    /**
+     * Gets a filter accepting the image files and containers of a directory.
+     * Subdirectories are rejected.
+     * @return the filter for files
+     */
+    public static Predicate<File> files() {
+        final boolean sniff = Boolean.getBoolean(PROPERTY_SNIFF);
+        final ContainerFormats containers = ContainerFormats.getInstance();
+        return file -> {
+            if (hasImageSuffix(file.getName()) || containers.isContainer(file.getName())) {
+                return file.isFile();
+            }
+            return sniff && file.isFile() && canDecode(file);
+        };
+    }
+
+    /**
+     * Gets a filter accepting the image and container entries of an
+     * {@link Archive}. Directory entries are rejected.
+     * @return the filter for archive entries
+     */
+    public static Predicate<ZipEntry> zipEntries() {
+        final ContainerFormats containers = ContainerFormats.getInstance();
+        return entry -> !entry.isDirectory() && (hasImageSuffix(entry.getName()) || containers.isContainer(entry.getName()));
+    }
+
+    /**
+     * Checks if the given file name has a suffix any of the installed <code>ImageReader</code>s handles.
+     * @param name the file name
+     * @return <code>true</code> if the name denotes a readable image format
+     */
+    public static boolean hasImageSuffix(final String name) {
+        final String extension = FilenameUtils.getExtension(name);
+        return !extension.isEmpty() && SUFFIXES.contains(extension.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Checks by the leading bytes of a file if any installed <code>ImageReader</code> can decode it.
+     * @param file the file
+     * @return <code>true</code> if the file looks like a readable image
+     */
+    public static boolean canDecode(final File file) {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            return iis != null && ImageIO.getImageReaders(iis).hasNext();
+        } catch (IOException e) {
+            LOGGER.fine(e.getMessage());
+            return false;
+        }
+    }
+}
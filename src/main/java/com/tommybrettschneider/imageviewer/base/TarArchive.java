@@ -0,0 +1,382 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import javax.imageio.stream.ImageInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * A tar archive, optionally gzip compressed, whose entries are walked.
+ *
+ * Listing the entries reads only their headers and skips their content,
+ * remembering where each entry's content starts; reading an entry before the
+ * archive has been listed completely lists it first. Entries of an uncompressed
+ * archive are then read in place with positional reads. A gzip compressed
+ * archive cannot be read at an offset, so it is decompressed into a temporary
+ * file when the first entry is read. The file is shared by all instances
+ * opened on the same version of the archive and deleted once they are closed.
+ *
+ * @author Tommy Brettschneider
+ */
+public class TarArchive extends Archive {
+
+    private static final Logger LOGGER = Logger.getLogger(TarArchive.class.getName());
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean compressed;
+    private final Map<String, Long> offsets = new ConcurrentHashMap<>();
+    private volatile boolean indexed;
+    private File data;
+
+    /**
+     * Constructor.
+     * @param file the archive
+     * @param name the name of the archive, see {@link Archive#getName()}
+     * @param compressed whether the archive is gzip compressed
+     */
+    public TarArchive(final File file, final String name, final boolean compressed) {
+        super(file, name);
+        this.compressed = compressed;
+    }
+
+    @Override
+    public Stream<ZipEntry> getChildren() {
+        final InputStream in;
+        try {
+            in = openArchive();
+        } catch (IOException e) {
+            LOGGER.warning(e.getMessage());
+            return Stream.empty();
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new HeaderIterator(in),
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        LOGGER.warning(e.getMessage());
+                    }
+                });
+    }
+
+    @Override
+    public InputStream getInputStream(final ZipEntry entry) throws IOException {
+        final long offset = getOffset(entry);
+        final FileChannel channel = FileChannel.open(getData().toPath(), StandardOpenOption.READ);
+        channel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(channel), entry.getSize());
+    }
+
+    /**
+     * Entries are read in place from the uncompressed archive.
+     */
+    @Override
+    public ImageInputStream getImageInputStream(final ZipEntry entry) throws IOException {
+        final long offset = getOffset(entry);
+        final FileChannel channel = FileChannel.open(getData().toPath(), StandardOpenOption.READ);
+        return new ChannelImageInputStream(channel, offset, entry.getSize());
+    }
+
+    private long getOffset(final ZipEntry entry) throws IOException {
+        Long offset = offsets.get(entry.getName());
+        if (offset == null && !indexed) {
+            index();
+            offset = offsets.get(entry.getName());
+        }
+        if (offset == null) {
+            throw new FileNotFoundException(entry.getName() + " in " + getName());
+        }
+        return offset;
+    }
+
+    /**
+     * Reads all headers, remembering the offsets of all entries.
+     */
+    private synchronized void index() throws IOException {
+        if (indexed) {
+            return;
+        }
+        try (InputStream in = openArchive()) {
+            final HeaderIterator headers = new HeaderIterator(in);
+            while (headers.hasNext()) {
+                headers.next();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private InputStream openArchive() throws IOException {
+        final InputStream in = new FileInputStream(getSource());
+        return compressed
+                ? new GZIPInputStream(in, BUFFER_SIZE)
+                : new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    /**
+     * Gets the uncompressed archive, decompressing it first if necessary.
+     */
+    private synchronized File getData() throws IOException {
+        if (data == null) {
+            if (!compressed) {
+                data = getSource();
+            } else {
+                final File source = getSource();
+                final String key = source.getAbsolutePath() + '|' + source.lastModified() + '|' + source.length();
+                data = extract(key, ".tar", this::openArchive);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            data = null;
+        }
+        super.close();
+    }
+
+    /**
+     * Reads the headers of the archive's entries, skipping their content.
+     * GNU long names and the path of pax extended headers are honoured.
+     */
+    private final class HeaderIterator implements Iterator<ZipEntry> {
+
+        private final InputStream in;
+        private final byte[] header = new byte[BLOCK_SIZE];
+        private long position;
+        private ZipEntry next;
+        private boolean end;
+
+        HeaderIterator(final InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !end) {
+                try {
+                    next = readNext();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                end = next == null;
+                if (end) {
+                    indexed = true;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public ZipEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final ZipEntry entry = next;
+            next = null;
+            return entry;
+        }
+
+        private ZipEntry readNext() throws IOException {
+            String longName = null;
+            while (readBlock()) {
+                final long size = parseNumber(124, 12);
+                final long offset = position;
+                final long padded = (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+                final byte type = header[156];
+                if (type == 'L') {
+                    longName = trim(readContent(size));
+                    skip(padded - size);
+                    continue;
+                }
+                if (type == 'x') {
+                    final String path = parsePaxPath(readContent(size));
+                    longName = path != null ? path : longName;
+                    skip(padded - size);
+                    continue;
+                }
+                skip(padded);
+                if (type == '0' || type == 0 || type == '7') {
+                    final ZipEntry entry = new ZipEntry(longName != null ? longName : parseName());
+                    entry.setSize(size);
+                    entry.setTime(parseNumber(136, 12) * 1000);
+                    offsets.put(entry.getName(), offset);
+                    return entry;
+                }
+                // directories, links and global headers
+                longName = null;
+            }
+            return null;
+        }
+
+        /**
+         * Reads the next header block.
+         * @return <code>false</code> at the end of the archive
+         */
+        private boolean readBlock() throws IOException {
+            int n = 0;
+            while (n < BLOCK_SIZE) {
+                final int read = in.read(header, n, BLOCK_SIZE - n);
+                if (read < 0) {
+                    if (n == 0) {
+                        return false;
+                    }
+                    throw new EOFException("Truncated tar header in " + getName());
+                }
+                n += read;
+            }
+            position += BLOCK_SIZE;
+            for (byte b : header) {
+                if (b != 0) {
+                    return true;
+                }
+            }
+            // an empty block marks the end of the archive
+            return false;
+        }
+
+        private byte[] readContent(final long size) throws IOException {
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt tar header in " + getName());
+            }
+            final byte[] content = new byte[(int) size];
+            int n = 0;
+            while (n < content.length) {
+                final int read = in.read(content, n, content.length - n);
+                if (read < 0) {
+                    throw new EOFException("Truncated tar entry in " + getName());
+                }
+                n += read;
+            }
+            position += size;
+            return content;
+        }
+
+        private void skip(final long count) throws IOException {
+            long remaining = count;
+            while (remaining > 0) {
+                final long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException("Truncated tar entry in " + getName());
+                    }
+                    remaining--;
+                } else {
+                    remaining -= skipped;
+                }
+            }
+            position += count;
+        }
+
+        private String parseName() {
+            final String name = parseString(0, 100);
+            final boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                    && header[260] == 'a' && header[261] == 'r';
+            if (ustar) {
+                final String prefix = parseString(345, 155);
+                if (!prefix.isEmpty()) {
+                    return prefix + '/' + name;
+                }
+            }
+            return name;
+        }
+
+        private String parseString(final int offset, final int length) {
+            int end = offset;
+            while (end < offset + length && header[end] != 0) {
+                end++;
+            }
+            return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Parses an octal number, or a big-endian binary number if the
+         * highest bit of the field is set.
+         */
+        private long parseNumber(final int offset, final int length) {
+            long value = 0;
+            if ((header[offset] & 0x80) != 0) {
+                for (int i = offset + 1; i < offset + length; i++) {
+                    value = (value << 8) | (header[i] & 0xFF);
+                }
+                return value;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                final byte b = header[i];
+                if (b >= '0' && b <= '7') {
+                    value = (value << 3) + (b - '0');
+                } else if (b == 0 || (b == ' ' && value > 0)) {
+                    break;
+                }
+            }
+            return value;
+        }
+    }
+
+    private static String trim(final byte[] content) {
+        int end = content.length;
+        while (end > 0 && content[end - 1] == 0) {
+            end--;
+        }
+        return new String(content, 0, end, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the <code>path</code> record of a pax extended header, whose
+     * records have the form <code>"length key=value\n"</code>.
+     */
+    private static String parsePaxPath(final byte[] content) {
+        int pos = 0;
+        while (pos < content.length) {
+            int space = pos;
+            while (space < content.length && content[space] != ' ') {
+                space++;
+            }
+            if (space == content.length) {
+                return null;
+            }
+            final int length;
+            try {
+                length = Integer.parseInt(new String(content, pos, space - pos, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            // the record needs at least an empty value between the space and the newline
+            if (length <= 0 || pos + length > content.length || space + 1 > pos + length - 1) {
+                return null;
+            }
+            final String record = new String(content, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring("path=".length());
+            }
+            pos += length;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Tar archives and comic book tar archives (cbt), uncompressed or gzip
+ * compressed (<code>.tar.gz</code>, <code>.tgz</code>). The pages of a comic
+ * book are walked in page order, like those of a cbz.
+ *
+ * @author Tommy Brettschneider
+ */
+public class TarFormat implements ContainerFormat {
+
+    @Override
+    public boolean accepts(final String name) {
+        final String lowerCase = name.toLowerCase(Locale.ROOT);
+        return lowerCase.endsWith(".tar") || lowerCase.endsWith(".cbt") || isCompressed(lowerCase);
+    }
+
+    @Override
+    public Archive open(final File file, final String name) throws IOException {
+        final boolean compressed = isCompressed(file.getName().toLowerCase(Locale.ROOT));
+        if (name.toLowerCase(Locale.ROOT).endsWith(".cbt")) {
+            return new TarArchive(file, name, compressed) {
+                @Override
+                public Stream<ZipEntry> getChildren() {
+                    return ComicBookFormat.sortPages(super.getChildren());
+                }
+            };
+        }
+        return new TarArchive(file, name, compressed);
+    }
+
+    private static boolean isCompressed(final String lowerCaseName) {
+        return lowerCaseName.endsWith(".tar.gz") || lowerCaseName.endsWith(".tgz");
+    }
+}
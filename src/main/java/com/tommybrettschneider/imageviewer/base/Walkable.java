@@ -1,8 +1,15 @@
 package com.tommybrettschneider.imageviewer.base;
 
-import com.tommybrettschneider.imageviewer.util.Files;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.builder.ToStringBuilder;
@@ -17,8 +24,21 @@ import org.apache.commons.lang3.builder.ToStringStyle;
 public abstract class Walkable<ImageFolderType, ImageSourceType> {
     
     private final static Logger LOGGER = Logger.getLogger(Walkable.class.getName()); 
+
+    /**
+     * Maximum number of children handed over at once by {@link #walk(ExecutorService, Consumer)}.
+     */
+    public final static int MAX_BATCH_SIZE = 512;
+
+    /**
+     * Maximum time children are held back by {@link #walk(ExecutorService, Consumer)}
+     * before the pending batch is handed over, so slow listings still show progress.
+     */
+    private final static long BATCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
     
     protected ImageFolderType source;
+
+    protected Predicate<? super ImageSourceType> filter = child -> true;
     
     public Walkable() {}
     
@@ -26,11 +46,59 @@ public abstract class Walkable<ImageFolderType, ImageSourceType> {
         this.source = source;
     }
     
+    /**
+     * Gets the children of this walkable. The returned stream may hold system
+     * resources and should be closed after use.
+     * @return the children of this walkable
+     */
     public abstract Stream<ImageSourceType> getChildren();
+
+    /**
+     * Enumerates the children of this walkable accepted by its filter in the
+     * background and hands them over in batches as they arrive. The consumer is called on the enumerating
+     * thread.
+     * @param executor the executor to run the enumeration on
+     * @param consumer receives the batches of children
+     * @return a handle to cancel the enumeration, e.g. when the user navigates away
+     */
+    public Future<?> walk(final ExecutorService executor, final Consumer<List<ImageSourceType>> consumer) {
+        return executor.submit(() -> {
+            try (Stream<ImageSourceType> children = getChildren()) {
+                final Iterator<ImageSourceType> it = children.sequential().filter(filter).iterator();
+                List<ImageSourceType> batch = new ArrayList<>();
+                long flushed = System.nanoTime();
+                while (it.hasNext() && !Thread.currentThread().isInterrupted()) {
+                    batch.add(it.next());
+                    if (batch.size() >= MAX_BATCH_SIZE || System.nanoTime() - flushed >= BATCH_INTERVAL_NANOS) {
+                        consumer.accept(batch);
+                        batch = new ArrayList<>();
+                        flushed = System.nanoTime();
+                    }
+                }
+                if (!batch.isEmpty() && !Thread.currentThread().isInterrupted()) {
+                    consumer.accept(batch);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        });
+    }
     
     public ImageFolderType getSource() {
         return this.source;
     }
+
+    /**
+     * Gets the filter deciding which children are enumerated by {@link #walk(ExecutorService, Consumer)}.
+     * @return the filter of this walkable
+     */
+    public Predicate<? super ImageSourceType> getFilter() {
+        return this.filter;
+    }
+
+    public void setFilter(final Predicate<? super ImageSourceType> filter) {
+        this.filter = filter;
+    }
     
     public static Walkable getInstance(Object obj) {
         Walkable walkable = null;
@@ -38,9 +106,9 @@ public abstract class Walkable<ImageFolderType, ImageSourceType> {
             File file = (File)obj;
             if (file.isDirectory()) {
                 walkable = new Directory(file);
-            } else if (Files.isZIP(file)) {
+            } else if (ContainerFormats.getInstance().isContainer(file)) {
                 try {
-                    walkable = new ZipFile(new java.util.zip.ZipFile(file));
+                    walkable = ContainerFormats.getInstance().open(file);
                 } catch (IOException e) {
                     LOGGER.warning(e.getMessage());
                 }
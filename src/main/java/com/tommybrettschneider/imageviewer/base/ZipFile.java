@@ -1,20 +1,110 @@
 package com.tommybrettschneider.imageviewer.base;
 
+import com.tommybrettschneider.imageviewer.util.ZipIndex;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
+import javax.imageio.stream.ImageInputStream;
 
 /**
+ * A zip archive whose entries are walked. The central directory is read once
+ * into a {@link ZipIndex}, which also serves the entries' content without
+ * keeping the archive open; archives that cannot be indexed (ZIP64) are read
+ * with <code>java.util.zip</code> until this archive is closed.
  *
  * @author Tommy Brettschneider
  */
-public class ZipFile extends Walkable<java.util.zip.ZipFile, ZipEntry> {
+public class ZipFile extends Archive {
 
-    public ZipFile(java.util.zip.ZipFile zipFile) {
-        source = zipFile;
+    private static final Logger LOGGER = Logger.getLogger(ZipFile.class.getName());
+
+    private final ZipIndex index;
+    private final java.util.zip.ZipFile zipFile;
+
+    public ZipFile(File file) throws IOException {
+        this(file, file.getPath());
     }
-    
+
+    /**
+     * Constructor.
+     * @param file the archive
+     * @param name the name of the archive, see {@link Archive#getName()}
+     * @throws IOException if the archive cannot be read
+     */
+    public ZipFile(File file, String name) throws IOException {
+        super(file, name);
+        ZipIndex zipIndex = null;
+        try {
+            zipIndex = ZipIndex.open(file);
+        } catch (IOException e) {
+            LOGGER.info(e.getMessage());
+        }
+        index = zipIndex;
+        zipFile = zipIndex == null ? new java.util.zip.ZipFile(file) : null;
+    }
+
     @Override
     public Stream<ZipEntry> getChildren() {
-        return (Stream<ZipEntry>)getSource().stream().parallel();
-    } 
+        if (index != null) {
+            return index.getEntries().stream().map(ZipIndex.Entry::toZipEntry);
+        }
+        return (Stream<ZipEntry>)zipFile.stream().parallel();
+    }
+
+    /**
+     * Compressed entries are inflated without sharing a
+     * <code>java.util.zip.ZipFile</code> with other threads, unless the
+     * archive could not be indexed.
+     */
+    @Override
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        return index != null
+                ? index.getInputStream(entry.getName())
+                : zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Entries stored without compression are read in place from the archive.
+     */
+    @Override
+    public ImageInputStream getImageInputStream(ZipEntry entry) throws IOException {
+        if (index != null) {
+            final ImageInputStream stored = index.openStored(entry.getName());
+            if (stored != null) {
+                return stored;
+            }
+        }
+        return super.getImageInputStream(entry);
+    }
+
+    /**
+     * Gets the index of the archive.
+     * @return the index or <code>null</code> if the archive is read with {@link #getZipFile()}
+     */
+    public ZipIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the archive opened with <code>java.util.zip</code>, only used if
+     * the archive cannot be indexed.
+     * @return the archive or <code>null</code> if the archive is read with {@link #getIndex()}
+     */
+    public java.util.zip.ZipFile getZipFile() {
+        return zipFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (zipFile != null) {
+                zipFile.close();
+            }
+        }
+    }
 }
\ No newline at end of file
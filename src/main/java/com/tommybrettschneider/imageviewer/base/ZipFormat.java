@@ -0,0 +1,24 @@
+package com.tommybrettschneider.imageviewer.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Zip archives, including zip archives nested in other containers.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ZipFormat implements ContainerFormat {
+
+    @Override
+    public boolean accepts(final String name) {
+        return FilenameUtils.isExtension(name.toLowerCase(Locale.ROOT), "zip");
+    }
+
+    @Override
+    public Archive open(final File file, final String name) throws IOException {
+        return new ZipFile(file, name);
+    }
+}
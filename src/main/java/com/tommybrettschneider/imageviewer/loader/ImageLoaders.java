@@ -0,0 +1,115 @@
+package com.tommybrettschneider.imageviewer.loader;
+
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/**
+ * Registry of the {@link ImageSourceLoader}s by URI scheme.
+ *
+ * Local files are read with positional reads, entries of zip archives
+ * (<code>jar:file:/archive.zip!/entry</code>) are read through the archive's
+ * index and http(s) images are fetched by the {@link RemoteImageFetcher}. Other schemes fall back to <code>URL.openStream()</code>.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class ImageLoaders {
+
+    private static ImageLoaders instance;
+
+    private static final ImageSourceLoader DEFAULT_LOADER = uri -> cache(uri.toURL().openStream());
+
+    private final Map<String, ImageSourceLoader> loaders = new ConcurrentHashMap<>();
+
+    public static synchronized ImageLoaders getInstance() {
+        if (instance == null) {
+            instance = new ImageLoaders();
+        }
+        return instance;
+    }
+
+    private ImageLoaders() {
+        register("file", uri -> ChannelImageInputStream.open(new File(uri)));
+        final ImageSourceLoader zipEntryLoader = new ZipEntryImageLoader();
+        register("jar", zipEntryLoader);
+        register("zip", zipEntryLoader);
+        final ImageSourceLoader httpLoader = new RemoteImageFetcher();
+        register("http", httpLoader);
+        register("https", httpLoader);
+    }
+
+    /**
+     * Registers the loader for a scheme, replacing the one registered before.
+     * @param scheme the URI scheme, e.g. <code>http</code>
+     * @param loader the loader
+     */
+    public void register(final String scheme, final ImageSourceLoader loader) {
+        loaders.put(scheme.toLowerCase(Locale.ROOT), loader);
+    }
+
+    public ImageSourceLoader getLoader(final String scheme) {
+        return scheme != null ? loaders.getOrDefault(scheme.toLowerCase(Locale.ROOT), DEFAULT_LOADER) : DEFAULT_LOADER;
+    }
+
+    /**
+     * Opens a stream on the image with the loader registered for its scheme.
+     * @param uri the image
+     * @return the stream, to be closed by the caller
+     * @throws IOException if the image cannot be opened
+     */
+    public ImageInputStream open(final URI uri) throws IOException {
+        return getLoader(uri.getScheme()).open(uri);
+    }
+
+    /**
+     * Opens a stream on the image with the loader registered for its scheme,
+     * reporting the progress of transferring it.
+     * @param uri the image
+     * @param progressListener may be <code>null</code>
+     * @return the stream, to be closed by the caller
+     * @throws IOException if the image cannot be opened
+     */
+    public ImageInputStream open(final URI uri, final IIOReadProgressListener progressListener) throws IOException {
+        return getLoader(uri.getScheme()).open(uri, progressListener);
+    }
+
+    /**
+     * Wraps a stream into an <code>ImageInputStream</code> caching as much of
+     * it in memory as has been read, which closes the stream when closed.
+     * @param in the stream
+     * @return the image stream
+     */
+    public static ImageInputStream cache(final InputStream in) {
+        return cache(in, in);
+    }
+
+    /**
+     * Wraps a stream into an <code>ImageInputStream</code> caching as much of
+     * it in memory as has been read, which closes the given resource when
+     * closed.
+     * @param in the stream
+     * @param owner the resource providing the stream
+     * @return the image stream
+     */
+    public static ImageInputStream cache(final InputStream in, final Closeable owner) {
+        return new MemoryCacheImageInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    owner.close();
+                }
+            }
+        };
+    }
+}
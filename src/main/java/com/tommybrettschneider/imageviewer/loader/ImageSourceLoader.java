@@ -0,0 +1,36 @@
+package com.tommybrettschneider.imageviewer.loader;
+
+import java.io.IOException;
+import java.net.URI;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Opens the images addressed by URIs of one scheme, see {@link ImageLoaders}.
+ *
+ * @author Tommy Brettschneider
+ */
+@FunctionalInterface
+public interface ImageSourceLoader {
+
+    /**
+     * Opens a stream on the image.
+     * @param uri the image
+     * @return the stream, to be closed by the caller
+     * @throws IOException if the image cannot be opened
+     */
+    public ImageInputStream open(URI uri) throws IOException;
+
+    /**
+     * Opens a stream on the image, reporting the progress of transferring it.
+     * Loaders of local images report nothing.
+     * @param uri the image
+     * @param progressListener notified via <code>imageProgress</code> (with a
+     * <code>null</code> reader) while the image is transferred; may be <code>null</code>
+     * @return the stream, to be closed by the caller
+     * @throws IOException if the image cannot be opened
+     */
+    public default ImageInputStream open(URI uri, IIOReadProgressListener progressListener) throws IOException {
+        return open(uri);
+    }
+}
@@ -0,0 +1,298 @@
+package com.tommybrettschneider.imageviewer.loader;
+
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
+import com.tommybrettschneider.imageviewer.util.ProxySettings;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Fetches images over http(s) into an on-disk cache.
+ *
+ * Connections are kept alive and reused by <code>HttpURLConnection</code>,
+ * and the number of concurrent fetches is bounded. Cached images are
+ * revalidated with <code>If-None-Match</code>/<code>If-Modified-Since</code>,
+ * so unchanged images are not transferred again, and served from the cache
+ * when the server cannot be reached or fails with a server error. Images the
+ * server reports as not found or gone are removed from the cache. The proxy
+ * configured in the
+ * {@link ProxySettings} is passed per connection instead of through system
+ * properties.
+ *
+ * The cache directory defaults to <code>~/.imageviewer/http</code> and can be
+ * set via the <code>imageviewer.httpcache.dir</code> system property, the
+ * number of concurrent fetches (default 4) via
+ * <code>imageviewer.http.connections</code>.
+ *
+ * @author Tommy Brettschneider
+ */
+public class RemoteImageFetcher implements ImageSourceLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(RemoteImageFetcher.class.getName());
+
+    private static final String PROPERTY_DIRECTORY = "imageviewer.httpcache.dir";
+    private static final String PROPERTY_CONNECTIONS = "imageviewer.http.connections";
+    private static final String META_ETAG = "ETag";
+    private static final String META_LAST_MODIFIED = "Last-Modified";
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File directory;
+    private final Semaphore permits;
+
+    public RemoteImageFetcher() {
+        this(getDefaultDirectory(), Integer.getInteger(PROPERTY_CONNECTIONS, 4));
+    }
+
+    /**
+     * Constructor.
+     * @param directory the directory to cache fetched images in
+     * @param maxConcurrentFetches the number of fetches allowed to run at the same time
+     */
+    public RemoteImageFetcher(final File directory, final int maxConcurrentFetches) {
+        this.directory = directory;
+        this.permits = new Semaphore(Math.max(1, maxConcurrentFetches), true);
+    }
+
+    private static File getDefaultDirectory() {
+        final String directory = System.getProperty(PROPERTY_DIRECTORY);
+        return directory != null
+                ? new File(directory)
+                : new File(System.getProperty("user.home"), ".imageviewer" + File.separator + "http");
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    @Override
+    public ImageInputStream open(final URI uri) throws IOException {
+        return open(uri, null);
+    }
+
+    @Override
+    public ImageInputStream open(final URI uri, final IIOReadProgressListener progressListener) throws IOException {
+        // not mapped, so a later revalidation can replace the file right away
+        return ChannelImageInputStream.open(fetch(uri, progressListener));
+    }
+
+    /**
+     * Fetches an image into the cache, or revalidates the cached copy.
+     * @param uri the image
+     * @param progressListener notified via <code>imageProgress</code> (with a
+     * <code>null</code> reader) while the image is transferred; may be <code>null</code>
+     * @return the cached file
+     * @throws IOException if the image can neither be fetched nor be found in the cache
+     */
+    public File fetch(final URI uri, final IIOReadProgressListener progressListener) throws IOException {
+        final String hash = hash(uri.toString());
+        final File body = new File(directory, hash.substring(0, 2) + File.separator + hash);
+        final File meta = new File(body.getPath() + ".properties");
+        final Properties cached = body.isFile() ? readMeta(meta) : null;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to fetch " + uri);
+        }
+        try {
+            final HttpURLConnection connection = connect(uri);
+            if (cached != null) {
+                if (cached.getProperty(META_ETAG) != null) {
+                    connection.setRequestProperty("If-None-Match", cached.getProperty(META_ETAG));
+                }
+                if (cached.getProperty(META_LAST_MODIFIED) != null) {
+                    connection.setRequestProperty("If-Modified-Since", cached.getProperty(META_LAST_MODIFIED));
+                }
+            }
+            final int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                discard(connection.getInputStream());
+                return body;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                discard(connection.getErrorStream());
+                if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                    delete(body);
+                    delete(meta);
+                }
+                throw new HttpStatusException(status, uri);
+            }
+            download(connection, body, meta, progressListener);
+            return body;
+        } catch (IOException e) {
+            // only an unreachable or failing server is worked around, other answers are final
+            final boolean unavailable = !(e instanceof HttpStatusException)
+                    || ((HttpStatusException) e).status >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+            if (cached != null && unavailable && !(e instanceof InterruptedIOException)) {
+                LOGGER.warning("Using cached copy of " + uri + ": " + e.getMessage());
+                return body;
+            }
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static HttpURLConnection connect(final URI uri) throws IOException {
+        final ProxySettings proxySettings = ProxySettings.getInstance();
+        final HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection(getProxy(proxySettings));
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (proxySettings.isProxyEnabled() && proxySettings.isProxyAuthenticationEnabled()
+                && proxySettings.getProxyUsername() != null && proxySettings.getProxyPassword() != null) {
+            final String credentials = proxySettings.getProxyUsername() + ':' + proxySettings.getProxyPassword();
+            connection.setRequestProperty("Proxy-Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        return connection;
+    }
+
+    private static Proxy getProxy(final ProxySettings proxySettings) throws IOException {
+        if (!proxySettings.isProxyEnabled() || proxySettings.getProxyHost() == null) {
+            return Proxy.NO_PROXY;
+        }
+        final int port;
+        try {
+            port = proxySettings.getProxyPort() != null ? Integer.parseInt(proxySettings.getProxyPort().trim()) : 80;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid proxy port " + proxySettings.getProxyPort(), e);
+        }
+        return new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved(proxySettings.getProxyHost(), port));
+    }
+
+    /**
+     * Streams the response body into the cache, reporting the progress.
+     */
+    private void download(final HttpURLConnection connection, final File body, final File meta,
+            final IIOReadProgressListener progressListener) throws IOException {
+        final File parent = body.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create http cache directory " + parent.getAbsolutePath());
+        }
+        final long length = connection.getContentLengthLong();
+        final File tmp = File.createTempFile("fetch", ".tmp", parent);
+        try {
+            try (InputStream in = connection.getInputStream(); OutputStream out = new FileOutputStream(tmp)) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                long transferred = 0;
+                int percent = -1;
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Interrupted while fetching " + connection.getURL());
+                    }
+                    out.write(buffer, 0, n);
+                    transferred += n;
+                    if (progressListener != null && length > 0 && (int) (100 * transferred / length) != percent) {
+                        percent = (int) (100 * transferred / length);
+                        progressListener.imageProgress(null, percent);
+                    }
+                }
+            }
+            move(tmp, body);
+            final Properties properties = new Properties();
+            if (connection.getHeaderField(META_ETAG) != null) {
+                properties.setProperty(META_ETAG, connection.getHeaderField(META_ETAG));
+            }
+            if (connection.getHeaderField(META_LAST_MODIFIED) != null) {
+                properties.setProperty(META_LAST_MODIFIED, connection.getHeaderField(META_LAST_MODIFIED));
+            }
+            try (OutputStream out = new FileOutputStream(meta)) {
+                properties.store(out, connection.getURL().toString());
+            }
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    private static Properties readMeta(final File meta) {
+        final Properties properties = new Properties();
+        if (meta.isFile()) {
+            try (InputStream in = new FileInputStream(meta)) {
+                properties.load(in);
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Reads and closes a response body, so the connection can be reused.
+     */
+    private static void discard(final InputStream in) throws IOException {
+        if (in != null) {
+            try (InputStream body = in) {
+                final byte[] buffer = new byte[4096];
+                while (body.read(buffer) >= 0) {
+                    // discard
+                }
+            }
+        }
+    }
+
+    private static void delete(final File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warning("Unable to delete " + file.getAbsolutePath());
+        }
+    }
+
+    private static void move(final File source, final File target) throws IOException {
+        try {
+            java.nio.file.Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            java.nio.file.Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A response other than OK or Not Modified.
+     */
+    private static final class HttpStatusException extends IOException {
+
+        private final int status;
+
+        HttpStatusException(final int status, final URI uri) {
+            super("HTTP " + status + " for " + uri);
+            this.status = status;
+        }
+    }
+
+    private static String hash(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            final char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.tommybrettschneider.imageviewer.loader;
+
+import com.tommybrettschneider.imageviewer.util.ZipIndex;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Opens entries of local zip archives addressed as
+ * <code>jar:file:/archive.zip!/entry</code> through the archive's
+ * {@link ZipIndex}. Archives that cannot be indexed are read with
+ * <code>java.util.zip</code>.
+ *
+ * The archives opened last are kept, keyed by their canonical path, time of
+ * last modification and length, so previewing and prefetching the entries of
+ * an archive reads its central directory once. Their number can be set via the
+ * <code>imageviewer.loader.archives</code> system property; archives read
+ * with <code>java.util.zip</code> are closed when they are evicted and no
+ * stream reads them any longer.
+ *
+ * @author Tommy Brettschneider
+ */
+final class ZipEntryImageLoader implements ImageSourceLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(ZipEntryImageLoader.class.getName());
+
+    private static final String PROPERTY_CACHED_ARCHIVES = "imageviewer.loader.archives";
+
+    private static final String SEPARATOR = "!/";
+
+    private final int maxArchives = Math.max(1, Integer.getInteger(PROPERTY_CACHED_ARCHIVES, 8));
+
+    // guarded by itself
+    private final Map<String, CachedArchive> archives = new LinkedHashMap<String, CachedArchive>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedArchive> eldest) {
+            if (size() > maxArchives) {
+                eldest.getValue().evict();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    @Override
+    public ImageInputStream open(final URI uri) throws IOException {
+        final String ssp = uri.getRawSchemeSpecificPart();
+        final int separator = ssp.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IOException("No archive entry in " + uri);
+        }
+        final File archive;
+        try {
+            archive = new File(URI.create(ssp.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a local archive: " + uri, e);
+        }
+        final String entryName = decode(ssp.substring(separator + SEPARATOR.length()));
+
+        final CachedArchive cached = acquire(archive);
+        boolean released = true;
+        try {
+            if (cached.index != null) {
+                final ImageInputStream stored = cached.index.openStored(entryName);
+                if (stored != null) {
+                    return stored;
+                }
+                return ImageLoaders.cache(cached.index.getInputStream(entryName));
+            }
+            final ZipEntry entry = cached.zipFile.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException(entryName + " in " + archive);
+            }
+            final InputStream in = cached.zipFile.getInputStream(entry);
+            released = false;
+            return ImageLoaders.cache(in, () -> {
+                try {
+                    in.close();
+                } finally {
+                    release(cached);
+                }
+            });
+        } finally {
+            if (released) {
+                release(cached);
+            }
+        }
+    }
+
+    /**
+     * Gets an archive from the cache or opens it, and registers a user of it.
+     */
+    private CachedArchive acquire(final File archive) throws IOException {
+        final String key = archive.getCanonicalPath() + '|' + archive.lastModified() + '|' + archive.length();
+        synchronized (archives) {
+            CachedArchive cached = archives.get(key);
+            if (cached == null) {
+                cached = CachedArchive.open(archive);
+                archives.put(key, cached);
+            }
+            cached.users++;
+            return cached;
+        }
+    }
+
+    private void release(final CachedArchive cached) throws IOException {
+        synchronized (archives) {
+            cached.users--;
+            cached.closeIfUnused();
+        }
+    }
+
+    /**
+     * An archive read through its index or, if it cannot be indexed, with
+     * <code>java.util.zip</code>, along with the number of streams reading it.
+     */
+    private static final class CachedArchive {
+
+        private final ZipIndex index;
+        private final ZipFile zipFile;
+        private int users;
+        private boolean evicted;
+
+        private CachedArchive(final ZipIndex index, final ZipFile zipFile) {
+            this.index = index;
+            this.zipFile = zipFile;
+        }
+
+        static CachedArchive open(final File archive) throws IOException {
+            try {
+                return new CachedArchive(ZipIndex.open(archive), null);
+            } catch (IOException e) {
+                // e.g. ZIP64 archives, which java.util.zip can still read
+                LOGGER.fine(e.getMessage());
+                return new CachedArchive(null, new ZipFile(archive));
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            try {
+                closeIfUnused();
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
+
+        void closeIfUnused() throws IOException {
+            if (evicted && users == 0 && zipFile != null) {
+                zipFile.close();
+            }
+        }
+    }
+
+    private static String decode(final String rawEntryName) throws UnsupportedEncodingException {
+        // percent-decoding only, a '+' is part of the name
+        return URLDecoder.decode(rawEntryName.replace("+", "%2B"), "UTF-8");
+    }
+}
@@ -0,0 +1,388 @@
+package com.tommybrettschneider.imageviewer.sort;
+
+import com.tommybrettschneider.imageviewer.ui.thumbnail.Thumbnail;
+import com.tommybrettschneider.imageviewer.ui.thumbnail.ThumbnailListModel;
+import com.tommybrettschneider.imageviewer.ui.thumbnail.ThumbnailPanel;
+import com.tommybrettschneider.imageviewer.util.NaturalSortKey;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+/**
+ * Sorts the thumbnails of the grid in the background.
+ *
+ * The sort key of every thumbnail is read once, so the file system is not
+ * asked for sizes and modification times on every comparison and names are
+ * collated once into a {@link NaturalSortKey}. An index permutation is sorted
+ * over these keys and applied to the model in one operation. Sorting is
+ * stable, thumbnails with equal keys keep their current order in either
+ * direction.
+ *
+ * The key a panel was sorted by stays active: thumbnails added later, while a
+ * folder is still being listed or when files are created, are sorted in as
+ * well, and a sort whose result is outdated by such changes is repeated. The
+ * keys read are kept per panel until it is sorted by the user again, so only
+ * the keys of added thumbnails are read, and the added thumbnails are sorted
+ * and merged into the thumbnails already in order. Reversing the direction
+ * sorts over the kept keys as well.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class SortEngine {
+
+    private static final Logger LOGGER = Logger.getLogger(SortEngine.class.getName());
+
+    private static final String PROPERTY_KEY = "imageviewer.sort.key";
+    private static final String PROPERTY_REVERSE = "imageviewer.sort.reverse";
+    private static final String PROPERTY_LISTENER = "imageviewer.sort.listener";
+    private static final String PROPERTY_KEYS = "imageviewer.sort.keys";
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private static SortEngine instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        final Thread t = new Thread(r, "thumbnail-sort");
+        t.setDaemon(true);
+        return t;
+    });
+    private int generation;
+    private Future<?> pending;
+    private ThumbnailPanel pendingPanel;
+    private Runnable pendingCallback;
+
+    /**
+     * The keys thumbnails are sorted by.
+     */
+    public enum Key {
+        NAME, SIZE, LAST_MODIFIED, IMAGE_PROPERTIES
+    }
+
+    /**
+     * Compares two indices of the permutation by their sort keys.
+     */
+    @FunctionalInterface
+    private interface IndexComparator {
+
+        int compare(int a, int b);
+    }
+
+    public static synchronized SortEngine getInstance() {
+        if (instance == null) {
+            instance = new SortEngine();
+        }
+        return instance;
+    }
+
+    private SortEngine() {
+    }
+
+    /**
+     * @param panel a thumbnail panel
+     * @return the key the panel is sorted by or <code>null</code> if it has not been sorted
+     */
+    public Key getKey(final ThumbnailPanel panel) {
+        return (Key) panel.getClientProperty(PROPERTY_KEY);
+    }
+
+    /**
+     * @param panel a thumbnail panel
+     * @return <code>true</code> if the panel is sorted in descending order
+     */
+    public boolean isReversed(final ThumbnailPanel panel) {
+        return Boolean.TRUE.equals(panel.getClientProperty(PROPERTY_REVERSE));
+    }
+
+    /**
+     * Sorts the thumbnails of a panel in the background, replacing a sort
+     * still pending, and keeps them sorted by the key from now on.
+     * To be called on the event dispatch thread.
+     * @param panel the panel to sort
+     * @param key the key to sort by
+     * @param reverse whether to sort in descending order
+     * @param sorted run on the event dispatch thread once the panel is sorted, may be <code>null</code>
+     */
+    public void sort(final ThumbnailPanel panel, final Key key, final boolean reverse, final Runnable sorted) {
+        panel.putClientProperty(PROPERTY_KEY, key);
+        panel.putClientProperty(PROPERTY_REVERSE, reverse);
+        // keys are read again, the files may have changed since
+        panel.putClientProperty(PROPERTY_KEYS, new ConcurrentHashMap<Thumbnail, Object>());
+        if (panel.getClientProperty(PROPERTY_LISTENER) == null) {
+            final ListDataListener listener = new ListDataListener() {
+                @Override
+                public void intervalAdded(ListDataEvent e) {
+                    // a pending sort notices the change itself
+                    if (getKey(panel) != null && pendingPanel != panel) {
+                        submit(panel, null);
+                    }
+                }
+
+                @Override
+                public void intervalRemoved(ListDataEvent e) {
+                    if (panel.getModel().getSize() == 0) {
+                        // e.g. another folder is shown
+                        getCachedKeys(panel).clear();
+                    }
+                }
+
+                @Override
+                public void contentsChanged(ListDataEvent e) {
+                }
+            };
+            panel.getModel().addListDataListener(listener);
+            panel.putClientProperty(PROPERTY_LISTENER, listener);
+        }
+        submit(panel, sorted);
+    }
+
+    /**
+     * Sorts a panel in the opposite direction, keeping its selection. The
+     * order of a panel that has not been sorted yet is just reversed.
+     * To be called on the event dispatch thread.
+     * @param panel the panel to reverse
+     */
+    public void reverse(final ThumbnailPanel panel) {
+        panel.putClientProperty(PROPERTY_REVERSE, !isReversed(panel));
+        if (getKey(panel) != null) {
+            submit(panel, pendingPanel == panel ? pendingCallback : null);
+            return;
+        }
+        final List<Thumbnail> thumbnails = panel.getModel().getThumbnails();
+        final int[] order = new int[thumbnails.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = order.length - 1 - i;
+        }
+        panel.setOrder(apply(thumbnails, order));
+    }
+
+    private void submit(final ThumbnailPanel panel, final Runnable sorted) {
+        cancel();
+        final Key key = getKey(panel);
+        final boolean reverse = isReversed(panel);
+        final ThumbnailListModel model = panel.getModel();
+        final int sortGeneration = generation;
+        final List<Thumbnail> unsorted = new ArrayList<>(model.getThumbnails());
+        // keys read by a sort cancelled meanwhile are kept as well
+        final Map<Thumbnail, Object> keys = getCachedKeys(panel);
+        pendingPanel = panel;
+        pendingCallback = sorted;
+        pending = executor.submit(() -> {
+            final int[] order;
+            try {
+                order = sort(unsorted, key, reverse, keys);
+            } catch (CancellationException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warning(e.getMessage());
+                return;
+            }
+            final List<Thumbnail> thumbnails = apply(unsorted, order);
+            SwingUtilities.invokeLater(() -> {
+                if (sortGeneration != generation) {
+                    return;
+                }
+                if (!model.getThumbnails().equals(unsorted)) {
+                    // the folder changed while sorting, sort what it shows now
+                    submit(panel, sorted);
+                    return;
+                }
+                clearPending();
+                panel.setOrder(thumbnails);
+                if (sorted != null) {
+                    sorted.run();
+                }
+            });
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Thumbnail, Object> getCachedKeys(final ThumbnailPanel panel) {
+        Map<Thumbnail, Object> keys = (Map<Thumbnail, Object>) panel.getClientProperty(PROPERTY_KEYS);
+        if (keys == null) {
+            keys = new ConcurrentHashMap<>();
+            panel.putClientProperty(PROPERTY_KEYS, keys);
+        }
+        return keys;
+    }
+
+    private void cancel() {
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        generation++;
+        clearPending();
+    }
+
+    private void clearPending() {
+        pending = null;
+        pendingPanel = null;
+        pendingCallback = null;
+    }
+
+    /**
+     * Sorts thumbnails by a key. Thumbnails with equal keys keep their order
+     * in either direction.
+     * @param thumbnails the thumbnails
+     * @param key the key to sort by
+     * @param descending whether to sort in descending order
+     * @return the permutation of indices into <code>thumbnails</code> in sorted order
+     * @throws CancellationException if the current thread is interrupted while
+     * the keys are read
+     */
+    public static int[] sort(final List<? extends Thumbnail> thumbnails, final Key key, final boolean descending) {
+        return sort(thumbnails, key, descending, new HashMap<>());
+    }
+
+    /**
+     * Sorts thumbnails by a key, reading only the keys not read before. The
+     * thumbnails up to the first one out of order are taken as sorted; the
+     * others are sorted and merged into them.
+     * @param thumbnails the thumbnails
+     * @param key the key to sort by
+     * @param descending whether to sort in descending order
+     * @param keys the keys by thumbnail read before for the same key, the keys read are added
+     * @return the permutation of indices into <code>thumbnails</code> in sorted order
+     * @throws CancellationException if the current thread is interrupted while
+     * the keys are read
+     */
+    public static int[] sort(final List<? extends Thumbnail> thumbnails, final Key key, final boolean descending,
+            final Map<Thumbnail, Object> keys) {
+        final int size = thumbnails.size();
+        final IndexComparator comparator;
+        if (key == Key.NAME) {
+            final byte[][] names = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                names[i] = (byte[]) getCachedKey(thumbnails.get(i), key, keys);
+            }
+            comparator = descending
+                    ? (a, b) -> NaturalSortKey.compare(names[b], names[a])
+                    : (a, b) -> NaturalSortKey.compare(names[a], names[b]);
+        } else {
+            final long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = (Long) getCachedKey(thumbnails.get(i), key, keys);
+            }
+            comparator = descending
+                    ? (a, b) -> Long.compare(values[b], values[a])
+                    : (a, b) -> Long.compare(values[a], values[b]);
+        }
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int sorted = Math.min(1, size);
+        while (sorted < size && comparator.compare(sorted - 1, sorted) <= 0) {
+            sorted++;
+        }
+        final int[] buffer = new int[size];
+        mergeSort(order, buffer, sorted, size, comparator);
+        if (sorted > 0 && sorted < size) {
+            merge(order, buffer, 0, sorted, size, comparator);
+        }
+        return order;
+    }
+
+    private static Object getCachedKey(final Thumbnail thumbnail, final Key key, final Map<Thumbnail, Object> keys) {
+        Object value = keys.get(thumbnail);
+        if (value == null) {
+            checkInterrupted();
+            value = key == Key.NAME ? NaturalSortKey.getKey(thumbnail.getSourceFilename()) : getKey(thumbnail, key);
+            keys.put(thumbnail, value);
+        }
+        return value;
+    }
+
+    /**
+     * Applies a permutation.
+     * @param <T> the type of the elements
+     * @param elements the elements
+     * @param order a permutation of indices into <code>elements</code>
+     * @return the elements in the order of the permutation
+     */
+    public static <T> List<T> apply(final List<T> elements, final int[] order) {
+        final List<T> ordered = new ArrayList<>(order.length);
+        for (int index : order) {
+            ordered.add(elements.get(index));
+        }
+        return ordered;
+    }
+
+    /**
+     * Images of unknown size have a pixel count of 0 and come first.
+     */
+    private static long getKey(final Thumbnail thumbnail, final Key key) {
+        switch (key) {
+            case SIZE:
+                return thumbnail.getFileSize();
+            case LAST_MODIFIED:
+                return thumbnail.getLastModified();
+            default:
+                final Dimension size = thumbnail.getSourceSize();
+                return size != null ? (long) size.width * size.height : 0;
+        }
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Stable merge sort of <code>order[from, to)</code>, falling back to
+     * insertion sort for short ranges.
+     */
+    private static void mergeSort(final int[] order, final int[] buffer, final int from, final int to, final IndexComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int index = order[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(order[j], index) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = index;
+            }
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid, comparator);
+        mergeSort(order, buffer, mid, to, comparator);
+        merge(order, buffer, from, mid, to, comparator);
+    }
+
+    /**
+     * Merges the sorted ranges <code>order[from, mid)</code> and
+     * <code>order[mid, to)</code>, the first one winning ties.
+     */
+    private static void merge(final int[] order, final int[] buffer, final int from, final int mid, final int to, final IndexComparator comparator) {
+        if (comparator.compare(order[mid - 1], order[mid]) <= 0) {
+            // already in order
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            order[k++] = comparator.compare(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+        }
+        while (i < mid) {
+            order[k++] = buffer[i++];
+        }
+        while (j < to) {
+            order[k++] = buffer[j++];
+        }
+    }
+}
@@ -1,29 +1,31 @@
 package com.tommybrettschneider.imageviewer.sort;
 
 import com.tommybrettschneider.imageviewer.ui.thumbnail.ScrollableThumbnailPane;
-import java.awt.Component;
-import java.awt.Container;
+import com.tommybrettschneider.imageviewer.ui.thumbnail.ThumbnailPanel;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
 import javax.swing.AbstractAction;
 import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JRadioButtonMenuItem;
-import javax.swing.SwingUtilities;
-
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
+
+/**
+ * Menu sorting the thumbnails of a {@link ThumbnailPanel} with the
+ * {@link SortEngine}, which keeps the key and direction of each panel, so all
+ * sort menus of a panel show the same state.
+ */
 public class SortMenu extends JMenu {
 
-    private ComparatorFactory cf;
-    private Container sortableContainer;
+    private ThumbnailPanel sortableContainer;
     private ButtonGroup buttonGroup;
-    private JMenuItem sortByFilename;
-    private JMenuItem sortBySize;
-    private JMenuItem sortByModifiedDate;
-    private JMenuItem sortByImageProperties;
+    private final Map<SortEngine.Key, JMenuItem> sortItems = new EnumMap<>(SortEngine.Key.class);
+    private JCheckBoxMenuItem reverse;
     private ScrollableThumbnailPane tp;
 
     public SortMenu() {
@@ -39,68 +41,91 @@ public class SortMenu extends JMenu {
 
     private void initialize() {
         if (tp != null) {
-            cf = ComparatorFactory.getInstance(tp.getSource());
             removeAll();
             buttonGroup = new ButtonGroup();
 
-            sortByFilename = new JRadioButtonMenuItem(new SortAction("Filename", cf.getNameComparator()));
-            add(sortByFilename);
-            buttonGroup.add(sortByFilename);
+            addSortItem(new SortAction("Filename", SortEngine.Key.NAME));
+            addSortItem(new SortAction("Size (KB)", SortEngine.Key.SIZE));
+            addSortItem(new SortAction("Modified Date", SortEngine.Key.LAST_MODIFIED));
+            addSortItem(new SortAction("Image Properties", SortEngine.Key.IMAGE_PROPERTIES));
 
-            sortBySize = new JRadioButtonMenuItem(new SortAction("Size (KB)", cf.getSizeComparator()));
-            add(sortBySize);
-            buttonGroup.add(sortBySize);
+            addSeparator();
 
-            sortByModifiedDate = new JRadioButtonMenuItem(new SortAction("Modified Date", cf.getLastModifiedComparator()));
-            add(sortByModifiedDate);
-            buttonGroup.add(sortByModifiedDate);
+            reverse = new JCheckBoxMenuItem(new ReverseAction());
+            add(reverse);
 
-            sortByImageProperties = new JRadioButtonMenuItem(new SortAction("Image Properties", cf.getImagePropertiesComparator()));
-            add(sortByImageProperties);
-            buttonGroup.add(sortByImageProperties);
+            addMenuListener(new MenuListener() {
+                @Override
+                public void menuSelected(MenuEvent e) {
+                    updateSelection();
+                }
 
-            addSeparator();
+                @Override
+                public void menuDeselected(MenuEvent e) {
+                }
 
-            add(new JCheckBoxMenuItem("Reverse"));
+                @Override
+                public void menuCanceled(MenuEvent e) {
+                }
+            });
         }
     }
-    
-    public void setSortableContainer(Container container) {
+
+    private void addSortItem(final SortAction action) {
+        final JMenuItem item = new JRadioButtonMenuItem(action);
+        add(item);
+        buttonGroup.add(item);
+        sortItems.put(action.key, item);
+    }
+
+    public void setSortableContainer(ThumbnailPanel container) {
         this.sortableContainer = container;
+        updateSelection();
+    }
+
+    /**
+     * Shows the key and direction the panel was last sorted by.
+     */
+    private void updateSelection() {
+        if (sortableContainer == null || reverse == null) {
+            return;
+        }
+        final JMenuItem selected = sortItems.get(SortEngine.getInstance().getKey(sortableContainer));
+        if (selected != null) {
+            selected.setSelected(true);
+        } else {
+            buttonGroup.clearSelection();
+        }
+        reverse.setSelected(SortEngine.getInstance().isReversed(sortableContainer));
     }
 
     class SortAction extends AbstractAction {
 
-        private Comparator comparator;
+        private final SortEngine.Key key;
 
-        public SortAction(String text) {
+        public SortAction(String text, SortEngine.Key key) {
             super(text);
+            this.key = key;
         }
-        
-        public SortAction(String text, Comparator comparator) {
-            super(text);
-            this.comparator = comparator;
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            SortEngine.getInstance().sort(sortableContainer, key, reverse.isSelected(), () -> {
+                sortableContainer.clearSelection();
+                tp.getViewport().setViewPosition(new Point(0, 0));
+            });
+        }
+    }
+
+    class ReverseAction extends AbstractAction {
+
+        public ReverseAction() {
+            super("Reverse");
         }
 
         @Override
         public void actionPerformed(ActionEvent e) {
-            System.out.println(comparator);
-            Component[] thumbnails = sortableContainer.getComponents();
-            Thread t = new Thread() {
-                @Override
-                public void run() {
-                    Arrays.parallelSort(thumbnails, comparator);
-                    SwingUtilities.invokeLater(() -> {
-                        sortableContainer.removeAll();
-                        Arrays.stream(thumbnails).forEach(thumb -> sortableContainer.add(thumb));
-                        tp.getViewport().setViewPosition(new Point(0, 0));
-                        sortableContainer.invalidate();
-                        sortableContainer.validate();
-                        sortableContainer.repaint();         
-                    });
-                }
-            };
-            t.start();  
+            SortEngine.getInstance().reverse(sortableContainer);
         }
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.tommybrettschneider.imageviewer.ui;
 
+import com.tommybrettschneider.imageviewer.base.FolderStatistics;
+import com.tommybrettschneider.imageviewer.base.FolderStatisticsService;
 import com.tommybrettschneider.imageviewer.base.Walkable;
 import com.tommybrettschneider.imageviewer.sort.SortMenu;
 import com.tommybrettschneider.imageviewer.ui.actions.FullscreenAction;
@@ -12,15 +14,19 @@ import com.tommybrettschneider.imageviewer.util.Tooltips;
 import com.tommybrettschneider.imageviewer.util.UIUtils;
 import java.awt.Dimension;
 import java.io.File;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.tree.TreePath;
+import org.apache.commons.io.FileUtils;
 
 /**
  *
@@ -31,7 +37,10 @@ public class ApplicationWindow extends javax.swing.JFrame {
     private static final Logger LOGGER = Logger.getLogger(ApplicationWindow.class.getName());
 
     public static final JPanel GLASSPANE = new DragThumbnailGlassPane();
+    private static final int MAX_FORMATS_SHOWN = 4;
     private static ExecutorService executorService;
+    private Future<?> folderStatistics;
+    private int folderGeneration;
     
     /**
      * Creates new form AcdSeeFrame
@@ -327,25 +336,64 @@ public class ApplicationWindow extends javax.swing.JFrame {
 
     private void treeFilesystemValueChanged(javax.swing.event.TreeSelectionEvent evt) {//GEN-FIRST:event_treeFilesystemValueChanged
         TreePath path = evt.getPath();
+        if (!(path.getLastPathComponent() instanceof FilesystemTreeNode)) {
+            // the placeholder shown while a folder is loaded
+            return;
+        }
         final FilesystemTreeNode node = (FilesystemTreeNode) path.getLastPathComponent();
         final File fileObj = node.getDirectory();
         final Walkable walkable = Walkable.getInstance(fileObj);
         ((ScrollableThumbnailPane)thumbnailPane).setSource(walkable);
-        /*new Thread() {
-            @Override
-            public void run() {
-                if (!FileHelper.isZIP(fileObj)) {
-                    final long size = FileUtils.sizeOfDirectory(node.getDirectory());
-                    SwingUtilities.invokeLater(() -> {
-                        jLabel1.setText(FileUtils.byteCountToDisplaySize(size));
-                    });
-                }
-            }
-        }.start();*/
+        showFolderStatistics(fileObj);
         comboboxLocation.setSelectedItem(node.getDirectory());
         ((LimitedEntriesComboxBoxModel)comboboxLocation.getModel()).addElement(node.getDirectory());
     }//GEN-LAST:event_treeFilesystemValueChanged
 
+    /**
+     * Shows the size and image count of the selected folder in the status
+     * bar, updated while the folder is walked in the background. The walk of
+     * the previously selected folder is cancelled.
+     */
+    private void showFolderStatistics(final File folder) {
+        if (folderStatistics != null) {
+            folderStatistics.cancel(true);
+            folderStatistics = null;
+        }
+        final int generation = ++folderGeneration;
+        jLabel1.setText("");
+        if (!folder.isDirectory()) {
+            return;
+        }
+        folderStatistics = FolderStatisticsService.getInstance().compute(folder, statistics -> {
+            final String text = formatFolderStatistics(statistics);
+            SwingUtilities.invokeLater(() -> {
+                // reports of the previous folder may still be queued
+                if (generation == folderGeneration) {
+                    jLabel1.setText(text);
+                }
+            });
+        });
+    }
+
+    private static String formatFolderStatistics(final FolderStatistics statistics) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(FileUtils.byteCountToDisplaySize(statistics.getBytes()));
+        sb.append(String.format(" in %,d files, %,d images", statistics.getFiles(), statistics.getImages()));
+        final String formats = statistics.getFormats().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(MAX_FORMATS_SHOWN)
+                .map(format -> String.format("%s %,d", format.getKey(), format.getValue()))
+                .collect(Collectors.joining(", "));
+        if (!formats.isEmpty()) {
+            sb.append(" (").append(formats);
+            sb.append(statistics.getFormats().size() > MAX_FORMATS_SHOWN ? ", \u2026)" : ")");
+        }
+        if (!statistics.isComplete()) {
+            sb.append(" \u2026");
+        }
+        return sb.toString();
+    }
+
     private void menuitemOptionsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menuitemOptionsActionPerformed
         // TODO add your handling code here:
         SetupProxyDialog connectionSettings = new SetupProxyDialog(this, true);
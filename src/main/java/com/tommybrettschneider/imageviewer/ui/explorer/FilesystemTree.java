@@ -10,11 +10,13 @@ import javax.swing.Icon;
 import javax.swing.JTree;
 import javax.swing.ToolTipManager;
 import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeWillExpandListener;
 import javax.swing.filechooser.FileSystemView;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
+import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeCellRenderer;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
@@ -36,6 +38,7 @@ public class FilesystemTree extends JTree {
      */
     public FilesystemTree() {
         super(new FilesystemTreeNode("Roots", fileSystemView.getRoots(), fileSystemView));
+        ((FilesystemTreeNode) getModel().getRoot()).setModel((DefaultTreeModel) getModel());
 
         //setTransferHandler(new CopyImageHandler(this));
         ToolTipManager.sharedInstance().registerComponent(this);
@@ -62,7 +65,8 @@ public class FilesystemTree extends JTree {
         });
 
         // Versichere, dass die Kinder des FilesystemTreeNode vor dem Expandieren
-        // geladen sind.
+        // geladen sind oder im Hintergrund geladen werden. Bereits geladene
+        // Kinder werden neu geladen, wenn sich der Ordner geändert hat.
         addTreeWillExpandListener(new TreeWillExpandListener() {
             @Override
             public void treeWillExpand(TreeExpansionEvent e) {
@@ -70,6 +74,7 @@ public class FilesystemTree extends JTree {
                 try {
                     //setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
                     node.ensureChildrenAreLoaded();
+                    node.revalidateChildren();
                 } finally {
                     //setCursor(Cursor.getDefaultCursor());
                 }
@@ -79,6 +84,24 @@ public class FilesystemTree extends JTree {
             public void treeWillCollapse(TreeExpansionEvent e) {
             }
         });
+
+        // Beobachte die Verzeichnisse aufgeklappter Knoten, so dass neue und
+        // gelöschte Ordner ohne erneutes Aufklappen erscheinen bzw. verschwinden.
+        addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent e) {
+                if (e.getPath().getLastPathComponent() instanceof FilesystemTreeNode) {
+                    ((FilesystemTreeNode) e.getPath().getLastPathComponent()).setWatched(true);
+                }
+            }
+
+            @Override
+            public void treeCollapsed(TreeExpansionEvent e) {
+                if (e.getPath().getLastPathComponent() instanceof FilesystemTreeNode) {
+                    ((FilesystemTreeNode) e.getPath().getLastPathComponent()).setWatched(false);
+                }
+            }
+        });
     }
 
     /**
@@ -102,6 +125,10 @@ public class FilesystemTree extends JTree {
         if (aNode.getUserObject().equals(aUserObject)) {
             return aNode;
         }
+        if (aNode instanceof FilesystemTreeNode && !((FilesystemTreeNode) aNode).isChildrenLoaded()) {
+            // nicht jeden Ordner des Dateisystems laden
+            return null;
+        }
         int childCount = aNode.getChildCount();
         for (int i = 0; i < childCount; i++) {
             DefaultMutableTreeNode child = (DefaultMutableTreeNode) aNode.getChildAt(i);
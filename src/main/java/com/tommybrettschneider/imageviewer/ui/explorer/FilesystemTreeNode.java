@@ -1,18 +1,39 @@
 package com.tommybrettschneider.imageviewer.ui.explorer;
 
-import com.tommybrettschneider.imageviewer.util.Files;
+import com.tommybrettschneider.imageviewer.base.ContainerFormats;
+import com.tommybrettschneider.imageviewer.base.DirectoryWatcher;
+import com.tommybrettschneider.imageviewer.util.NaturalSortKey;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.filechooser.FileSystemView;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
-import org.apache.commons.io.comparator.NameFileComparator;
 
 /**
  * Eine TreeNode-Implementierung zur Abbildung der Baumstruktur eines
@@ -29,17 +50,34 @@ import org.apache.commons.io.comparator.NameFileComparator;
  */
 public class FilesystemTreeNode extends DefaultMutableTreeNode implements Transferable {
 
+    private static final Logger LOGGER = Logger.getLogger(FilesystemTreeNode.class.getName());
+
+    private static final String LOADING = "loading\u2026";
+
+    private static final Comparator<FilesystemTreeNode> COMPARATOR = Comparator.comparing(FilesystemTreeNode::getSortKey);
+
     private final FileSystemView fileSystemView;
 
+    private DefaultTreeModel model;
+
     private boolean childrenLoaded;
 
+    private ChildrenLoader loader;
+
+    private volatile long loadedLastModified;
+
+    private DirectoryWatcher.Registration watch;
+
+    private NaturalSortKey sortKey;
+
     /**
      * Erzeuge ein Verzeichnisbaumknoten zu einem Verzeichnis und einer
      * Dateisystemsicht.
      */
-    private FilesystemTreeNode(File directory, FileSystemView fileSystemView) {
+    private FilesystemTreeNode(File directory, FileSystemView fileSystemView, DefaultTreeModel model) {
         super(directory);
         this.fileSystemView = fileSystemView;
+        this.model = model;
         childrenLoaded = false;
     }
 
@@ -61,7 +99,25 @@ public class FilesystemTreeNode extends DefaultMutableTreeNode implements Transf
      */
     private void addChildren(File[] children) {
         childrenLoaded = true;
-        Arrays.stream(children).forEach(child->add(new FilesystemTreeNode(child, fileSystemView)));
+        Arrays.stream(children).forEach(child->add(new FilesystemTreeNode(child, fileSystemView, model)));
+    }
+
+    /**
+     * Setze das Modell, in dem dieser Knoten und seine Kinder angezeigt
+     * werden. Erst mit einem Modell werden die Kinder im Hintergrund geladen
+     * und dem Modell nach und nach bekannt gemacht, ohne Modell werden sie
+     * beim ersten Zugriff sofort geladen.
+     * @param model
+     */
+    public void setModel(DefaultTreeModel model) {
+        this.model = model;
+        if (children != null) {
+            for (Object child : children) {
+                if (child instanceof FilesystemTreeNode) {
+                    ((FilesystemTreeNode) child).setModel(model);
+                }
+            }
+        }
     }
 
     /**
@@ -76,7 +132,8 @@ public class FilesystemTreeNode extends DefaultMutableTreeNode implements Transf
     }
 
     /**
-     * Versichere, dass die Kinder geladen sind.
+     * Versichere, dass die Kinder geladen sind oder geladen werden. Solange
+     * sie im Hintergrund geladen werden, ist ein Platzhalter das letzte Kind.
      */
     public void ensureChildrenAreLoaded() {
         if (!childrenLoaded) {
@@ -84,6 +141,43 @@ public class FilesystemTreeNode extends DefaultMutableTreeNode implements Transf
         }
     }
 
+    /**
+     * Prüfe, ob die Kinder geladen sind oder geladen werden.
+     * @return 
+     */
+    public boolean isChildrenLoaded() {
+        return childrenLoaded;
+    }
+
+    /**
+     * Lade die Kinder erneut im Hintergrund, falls sich das Verzeichnis seit
+     * dem letzten Laden geändert hat, erkennbar an seinem Änderungsdatum.
+     * Hinzugekommene Ordner werden eingefügt, verschwundene entfernt; die
+     * Knoten unveränderter Ordner bleiben mitsamt ihrer Kinder erhalten.
+     */
+    public void revalidateChildren() {
+        revalidateChildren(false);
+    }
+
+    /**
+     * Lade die Kinder erneut im Hintergrund.
+     * @param force lade auch dann, wenn das Änderungsdatum des Verzeichnisses
+     * unverändert ist
+     */
+    public void revalidateChildren(boolean force) {
+        if (!childrenLoaded || model == null) {
+            return;
+        }
+        if (loader != null) {
+            if (!force) {
+                return;
+            }
+            loader.cancel(true);
+        }
+        loader = new ChildrenLoader(null, force);
+        loader.execute();
+    }
+
     /**
      * Liefere ein Kind zu einem Index. Stelle sicher, dass die Kinder geladen
      * sind.
@@ -114,6 +208,18 @@ public class FilesystemTreeNode extends DefaultMutableTreeNode implements Transf
         return (File) getUserObject();
     }
 
+    /**
+     * Liefere den Sortierschlüssel des Verzeichnisnamens, der nur einmal
+     * berechnet wird. Laufwerke ohne Namen werden nach ihrem Pfad sortiert.
+     */
+    private NaturalSortKey getSortKey() {
+        if (sortKey == null) {
+            final String name = getDirectory().getName();
+            sortKey = NaturalSortKey.of(name.isEmpty() ? getDirectory().getPath() : name);
+        }
+        return sortKey;
+    }
+
     @Override
     public boolean isLeaf() {
         return childrenLoaded && super.isLeaf();
@@ -121,18 +227,272 @@ public class FilesystemTreeNode extends DefaultMutableTreeNode implements Transf
 
     /**
      * Ermittle die von der Dateisystemsicht gelieferten Kinder dieses Ordners.
-     * Unter diesen filtere die traversierbaren Ordner heraus, sortiere sie mit
-     * dem Standard-Comparator, erzeuge die Kinderknoten und füge sie diesem
-     * Knoten zu.
+     * Unter diesen filtere die traversierbaren Ordner heraus, sortiere sie in
+     * natürlicher Reihenfolge ihrer Namen, erzeuge die Kinderknoten und füge sie diesem
+     * Knoten zu. Mit einem Modell geschieht das im Hintergrund, bis dahin
+     * zeigt ein Platzhalter an, dass geladen wird.
      */
     private void loadChildren() {
         childrenLoaded = true;
-        Arrays.stream(fileSystemView.getFiles(getDirectory(), true))
-            .sorted(NameFileComparator.NAME_SYSTEM_COMPARATOR)
-            .filter(file->fileSystemView.isTraversable(file) || Files.isZIP(file))
-            .forEach(file->add(new FilesystemTreeNode(file, fileSystemView)));
+        if (model == null) {
+            final List<File> files = new ArrayList<>();
+            try {
+                listChildren(files::add, () -> false);
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+            }
+            files.stream()
+                .map(file->new FilesystemTreeNode(file, fileSystemView, model))
+                .sorted(COMPARATOR)
+                .forEach(this::add);
+            return;
+        }
+        final DefaultMutableTreeNode placeholder = new DefaultMutableTreeNode(LOADING, false);
+        // noch kein Ereignis, der Baum fragt gerade selbst nach den Kindern
+        add(placeholder);
+        loader = new ChildrenLoader(placeholder, true);
+        loader.execute();
+    }
+
+    /**
+     * Zähle die Ordner und Container dieses Verzeichnisses auf. Verzeichnisse
+     * des Dateisystems werden per <code>DirectoryStream</code> gelesen, so
+     * dass die ersten Kinder vorliegen, bevor das ganze Verzeichnis gelesen
+     * ist, und pro Eintrag nur ein <code>stat</code> anfällt.
+     */
+    private void listChildren(Consumer<File> consumer, BooleanSupplier cancelled) throws IOException {
+        final File directory = getDirectory();
+        final ContainerFormats containers = ContainerFormats.getInstance();
+        if (!fileSystemView.isFileSystem(directory)) {
+            Arrays.stream(fileSystemView.getFiles(directory, true))
+                .filter(file->fileSystemView.isTraversable(file) || containers.isContainer(file))
+                .forEach(consumer);
+            return;
+        }
+        try (DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(directory.toPath())) {
+            for (Path path : stream) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                if (isChild(path)) {
+                    consumer.accept(path.toFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Prüfe, ob ein Eintrag eines Verzeichnisses des Dateisystems als Kind
+     * angezeigt wird, also ein nicht verborgener Ordner oder Container ist.
+     */
+    private boolean isChild(Path path) {
+        final File file = path.toFile();
+        if (fileSystemView.isHiddenFile(file)) {
+            return false;
         }
-    
+        final BasicFileAttributes attributes;
+        try {
+            attributes = java.nio.file.Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // z.B. ein toter Link oder schon wieder gelöscht
+            return false;
+        }
+        return attributes.isDirectory()
+            || (attributes.isRegularFile() && ContainerFormats.getInstance().isContainer(file.getName()));
+    }
+
+    /**
+     * Beobachte das Verzeichnis dieses Knotens, solange er aufgeklappt ist,
+     * und übernimm hinzugekommene und gelöschte Ordner in seine Kinder.
+     * @param watched 
+     */
+    public void setWatched(boolean watched) {
+        if (watched && watch == null && model != null && fileSystemView.isFileSystem(getDirectory())) {
+            try {
+                watch = DirectoryWatcher.getInstance().watch(getDirectory().toPath(), this::directoryChanged);
+            } catch (IOException e) {
+                LOGGER.fine(e.getMessage());
+            }
+        } else if (!watched && watch != null) {
+            watch.close();
+            watch = null;
+        }
+    }
+
+    /**
+     * Übernimm die Änderungen des Verzeichnisses. Wird vom Thread des
+     * <code>DirectoryWatcher</code> aufgerufen, der die neuen Einträge prüft;
+     * die Kinder werden auf dem Event-Dispatch-Thread geändert.
+     */
+    private void directoryChanged(DirectoryWatcher.Change change) {
+        if (change.isGone()) {
+            // das Verzeichnis wurde samt seiner Ordner gelöscht
+            SwingUtilities.invokeLater(() -> {
+                if (childrenLoaded && watch != null) {
+                    removeChildren(child -> child instanceof FilesystemTreeNode);
+                }
+            });
+            return;
+        }
+        if (change.isOverflow()) {
+            SwingUtilities.invokeLater(() -> revalidateChildren(true));
+            return;
+        }
+        final List<File> created = change.getCreated().stream()
+            .filter(this::isChild)
+            .map(Path::toFile)
+            .collect(Collectors.toList());
+        final Set<File> deleted = change.getDeleted().stream()
+            .map(Path::toFile)
+            .collect(Collectors.toSet());
+        if (created.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (!childrenLoaded || watch == null) {
+                return;
+            }
+            removeChildren(child -> child instanceof FilesystemTreeNode
+                && deleted.contains(((FilesystemTreeNode) child).getDirectory()));
+            mergeChildren(created);
+        });
+    }
+
+    /**
+     * Füge die gegebenen Ordner als Kinder ein, sofern sie noch fehlen, und
+     * zwar an der Stelle, an die sie gemäß Sortierung gehören. Der Baum
+     * erfährt von allen eingefügten Kindern mit einem einzigen Ereignis. Ein
+     * Platzhalter bleibt das letzte Kind.
+     */
+    private void mergeChildren(Collection<File> files) {
+        final Set<File> present = new HashSet<>();
+        final List<FilesystemTreeNode> nodes = new ArrayList<>();
+        final List<TreeNode> others = new ArrayList<>();
+        if (children != null) {
+            for (Object child : children) {
+                if (child instanceof FilesystemTreeNode) {
+                    nodes.add((FilesystemTreeNode) child);
+                    present.add(((FilesystemTreeNode) child).getDirectory());
+                } else {
+                    others.add((TreeNode) child);
+                }
+            }
+        }
+        final List<FilesystemTreeNode> added = files.stream()
+            .filter(present::add)
+            .map(file->new FilesystemTreeNode(file, fileSystemView, model))
+            .sorted(COMPARATOR)
+            .collect(Collectors.toList());
+        if (added.isEmpty()) {
+            return;
+        }
+        final Vector<TreeNode> merged = new Vector<>(nodes.size() + added.size() + others.size());
+        final int[] indices = new int[added.size()];
+        int i = 0;
+        int j = 0;
+        while (i < nodes.size() || j < added.size()) {
+            if (j < added.size() && (i == nodes.size() || COMPARATOR.compare(added.get(j), nodes.get(i)) < 0)) {
+                final FilesystemTreeNode node = added.get(j);
+                node.setParent(this);
+                indices[j++] = merged.size();
+                merged.add(node);
+            } else {
+                merged.add(nodes.get(i++));
+            }
+        }
+        merged.addAll(others);
+        children = merged;
+        model.nodesWereInserted(this, indices);
+    }
+
+    /**
+     * Entferne die gegebenen Kinder. Der Baum erfährt davon mit einem
+     * einzigen Ereignis.
+     */
+    private void removeChildren(Predicate<Object> stale) {
+        if (children == null) {
+            return;
+        }
+        final List<Integer> indices = new ArrayList<>();
+        final List<Object> removed = new ArrayList<>();
+        for (int i = 0; i < children.size(); i++) {
+            final Object child = children.get(i);
+            if (stale.test(child)) {
+                indices.add(i);
+                removed.add(child);
+            }
+        }
+        if (indices.isEmpty()) {
+            return;
+        }
+        for (int i = indices.size() - 1; i >= 0; i--) {
+            remove(indices.get(i));
+        }
+        model.nodesWereRemoved(this, indices.stream().mapToInt(Integer::intValue).toArray(), removed.toArray());
+    }
+
+    /**
+     * Lädt die Kinder eines Knotens im Hintergrund und reicht sie in Schüben
+     * an den Event-Dispatch-Thread weiter, wo sie dem Knoten eingefügt werden.
+     */
+    private final class ChildrenLoader extends SwingWorker<Long, File> {
+
+        private final DefaultMutableTreeNode placeholder;
+        private final boolean force;
+        private final Set<File> listed = ConcurrentHashMap.newKeySet();
+        private volatile boolean complete;
+
+        ChildrenLoader(DefaultMutableTreeNode placeholder, boolean force) {
+            this.placeholder = placeholder;
+            this.force = force;
+        }
+
+        @Override
+        protected Long doInBackground() throws IOException {
+            final long lastModified = getDirectory().lastModified();
+            if (!force && lastModified == loadedLastModified) {
+                return null;
+            }
+            listChildren(file -> {
+                listed.add(file);
+                publish(file);
+            }, this::isCancelled);
+            complete = !isCancelled();
+            return lastModified;
+        }
+
+        @Override
+        protected void process(List<File> files) {
+            if (!isCancelled()) {
+                mergeChildren(files);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (loader == this) {
+                loader = null;
+            }
+            if (isCancelled()) {
+                removeChildren(child -> child == placeholder);
+                return;
+            }
+            try {
+                final Long lastModified = get();
+                if (lastModified != null) {
+                    loadedLastModified = lastModified;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.warning(e.getCause().getMessage());
+            }
+            // verschwundene Ordner nur entfernen, wenn vollständig gelesen wurde
+            removeChildren(child -> child == placeholder || (complete && child instanceof FilesystemTreeNode
+                && !listed.contains(((FilesystemTreeNode) child).getDirectory())));
+        }
+    }
+
     @Override
     public Object getTransferData(DataFlavor arg0) throws UnsupportedFlavorException, IOException {
         throw new UnsupportedOperationException("Not supported yet.");
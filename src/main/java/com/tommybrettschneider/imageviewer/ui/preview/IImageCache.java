@@ -1,6 +1,11 @@
 package com.tommybrettschneider.imageviewer.ui.preview;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.JComponent;
 
 public interface IImageCache extends IImageManager {
 
@@ -11,4 +16,35 @@ public interface IImageCache extends IImageManager {
     public void resetAutoscaleImage();
 
     public boolean isCached(Object obj);
+
+    /**
+     * Gets an image from the cache or decodes it without making it the
+     * current image.
+     *
+     * @param uri the image to load
+     * @param pl listener notified about the progress of the decode, may be <code>null</code>
+     * @return the image or <code>null</code> if it cannot be decoded
+     */
+    public BufferedImage load(URI uri, IIOReadProgressListener pl);
+
+    /**
+     * Decodes an image from a stream without caching it or making it the
+     * current image.
+     *
+     * @param iis the stream to read the image from
+     * @return the image
+     * @throws IOException if the image cannot be decoded
+     */
+    public BufferedImage decode(ImageInputStream iis) throws IOException;
+
+    /**
+     * Decodes an image in the background and scales it for the given display
+     * mode without making it the current image. Aborts the decode as soon as
+     * the calling thread is interrupted.
+     *
+     * @param uri the image to load
+     * @param imageDisplayMode the display mode to scale the image for
+     * @param component the component the image is displayed in
+     */
+    public void prefetch(URI uri, ImageDisplayMode imageDisplayMode, JComponent component);
 }
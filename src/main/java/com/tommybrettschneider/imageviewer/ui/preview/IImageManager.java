@@ -7,6 +7,7 @@ import java.io.InputStream;
 import java.net.URI;
 
 import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.JComponent;
 
 public interface IImageManager {
@@ -40,6 +41,15 @@ public interface IImageManager {
      */
     public BufferedImage getImage(InputStream inputStream) throws IOException;
 
+    /**
+     * Load image from a (seekable) image stream.
+     *
+     * @param iis
+     * @return
+     * @throws IOException
+     */
+    public BufferedImage getImage(ImageInputStream iis) throws IOException;
+
     /**
      * Scale source image to component's size - keep aspect ratio of source
      * image.
@@ -70,4 +80,20 @@ public interface IImageManager {
      * @return
      */
     public BufferedImage proportionalScale(BufferedImage sourceImage, ImageDisplayMode imageDisplayMode);
+
+    /**
+     * Get the quality images are scaled with for the given display mode.
+     *
+     * @param imageDisplayMode
+     * @return
+     */
+    public ScalingQuality getScalingQuality(ImageDisplayMode imageDisplayMode);
+
+    /**
+     * Set the quality images are scaled with for the given display mode.
+     *
+     * @param imageDisplayMode
+     * @param quality
+     */
+    public void setScalingQuality(ImageDisplayMode imageDisplayMode, ScalingQuality quality);
 }
@@ -4,6 +4,7 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URI;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * @author Tommy Brettschneider
@@ -12,6 +13,8 @@ public interface IPreviewPane {
     
     public void setSource(InputStream is) throws Exception;
 
+    public void setSource(ImageInputStream iis) throws Exception;
+
     public void setSource(File file) throws Exception;
 
     public void setSource(URI uri) throws Exception;
@@ -1,34 +1,79 @@
 package com.tommybrettschneider.imageviewer.ui.preview;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.logging.Logger;
 
+import javax.imageio.ImageReader;
 import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.JComponent;
 
 import static com.tommybrettschneider.imageviewer.ui.preview.ImageDisplayMode.*;
 
+/**
+ * Least-recently-used cache for decoded images and their scaled instances.
+ *
+ * The cache is bounded by the pixel memory of the images it holds rather than
+ * by the number of entries. The budget defaults to a quarter of the maximum
+ * heap and can be set via the <code>imageviewer.imagecache.budget</code>
+ * system property (in bytes). The current image is never evicted.
+ *
+ * Images without a URI, i.e. decoded from a stream or set as the current
+ * image, cannot be looked up again. They are cached only while they are the
+ * current image, so that their scaled instances are kept.
+ */
 public class ImageCache implements IImageCache {
 
-    private final Map<Object, BufferedImage> cache;
+    private static final Logger LOGGER = Logger.getLogger(ImageCache.class.getName());
+
+    private static final String PROPERTY_BUDGET = "imageviewer.imagecache.budget";
+
+    private final Map<Object, CachedImage> cache;
     private final IImageManager imageManager;
-    private final Map<ImageDisplayMode, BufferedImage> resizedInstances;
+    private final long budget;
+    private long size;
+    private Object currentKey;
+    private Object anonymousKey;
 
     public ImageCache() {
-        cache = new HashMap<>();
-        resizedInstances = new HashMap<>();
-        imageManager = new ImageManager();
+        this(getDefaultBudget());
+    }
+
+    public ImageCache(final long budget) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.imageManager = new ImageManager();
+        this.budget = budget;
     }
 
     public final IImageManager getImageManager() {
         return imageManager;
     }
 
+    /**
+     * Gets the maximum number of bytes of pixel memory held by this cache.
+     * @return the cache's budget in bytes
+     */
+    public final long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Gets the number of bytes of pixel memory currently held by this cache.
+     * @return the cache's size in bytes
+     */
+    public final synchronized long getSize() {
+        return size;
+    }
+
     @Override
     public final BufferedImage getImage(final URI uri) {
         return getImage(uri, null);
@@ -36,16 +81,13 @@ public class ImageCache implements IImageCache {
 
     @Override
     public final BufferedImage getImage(final URI uri, final IIOReadProgressListener pl) {
-        BufferedImage img = cache.get(uri);
+        BufferedImage img = select(uri);
         if (img == null) {
-            cache.clear();
-            resizedInstances.clear();
             try {
                 img = imageManager.getImage(uri, pl);
-                cache.put(uri, img);
-                resizedInstances.put(FULLSIZE, img);
+                put(uri, img);
             } catch (IOException e) {
-                //TODO
+                LOGGER.warning(e.getMessage());
             }
         }
         return img;
@@ -53,45 +95,102 @@ public class ImageCache implements IImageCache {
 
     @Override
     public final BufferedImage getImage(final File file) {
-        BufferedImage img = cache.get(file);
+        final URI uri = file.toURI();
+        BufferedImage img = select(uri);
         if (img == null) {
-            cache.clear();
-            resizedInstances.clear();
             try {
                 img = imageManager.getImage(file);
-                cache.put(file, img);
-                resizedInstances.put(FULLSIZE, img);
+                put(uri, img);
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
+        return img;
+    }
+
+    @Override
+    public final BufferedImage getImage(InputStream inputStream) throws IOException {
+        final BufferedImage img = imageManager.getImage(inputStream);
+        putAnonymous(img);
+        return img;
+    }
+
+    @Override
+    public final BufferedImage load(final URI uri, final IIOReadProgressListener pl) {
+        BufferedImage img = peek(uri);
+        if (img == null) {
+            try {
+                img = imageManager.getImage(uri, pl);
+                add(uri, img);
             } catch (IOException e) {
-                //TODO
+                LOGGER.warning(e.getMessage());
             }
         }
         return img;
     }
 
     @Override
-    public boolean isCached(Object object) {
-        return cache.get(object) != null;
+    public final BufferedImage getImage(final ImageInputStream iis) throws IOException {
+        final BufferedImage img = imageManager.getImage(iis);
+        putAnonymous(img);
+        return img;
     }
 
     @Override
-    public final BufferedImage getCurrentImage() {
-        return resizedInstances.get(FULLSIZE);
+    public final BufferedImage decode(final ImageInputStream iis) throws IOException {
+        return imageManager.getImage(iis);
     }
 
     @Override
-    public final BufferedImage getImage(InputStream inputStream) throws IOException {
-        cache.clear();
-        resizedInstances.clear();
-        setCurrentImage(imageManager.getImage(inputStream));
-        return getCurrentImage();
+    public final void prefetch(final URI uri, final ImageDisplayMode imageDisplayMode, final JComponent component) {
+        BufferedImage img = peek(uri);
+        if (img == null) {
+            final AbortOnInterrupt pl = new AbortOnInterrupt();
+            try {
+                img = imageManager.getImage(uri, pl);
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+                return;
+            }
+            if (pl.isAborted() || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            add(uri, img);
+        }
+        if (imageDisplayMode.equals(AUTORESIZE)) {
+            proportionalScale(img, component);
+        } else {
+            proportionalScale(img, imageDisplayMode);
+        }
+    }
+
+    @Override
+    public synchronized boolean isCached(Object object) {
+        return cache.containsKey(object instanceof File ? ((File) object).toURI() : object);
+    }
+
+    @Override
+    public final synchronized BufferedImage getCurrentImage() {
+        final CachedImage current = cache.get(currentKey);
+        return current != null ? current.image : null;
+    }
+
+    @Override
+    public synchronized void setCurrentImage(final BufferedImage img) {
+        final Object key = keyOf(img);
+        if (key != null) {
+            setCurrentKey(key);
+        } else {
+            putAnonymous(img);
+        }
     }
 
     @Override
     public final BufferedImage proportionalScale(final BufferedImage sourceImage, final ImageDisplayMode imageDisplayMode) {
-        BufferedImage img = resizedInstances.get(imageDisplayMode);
+        BufferedImage img = getScaledInstance(sourceImage, imageDisplayMode);
         if (img == null && sourceImage != null) {
             img = imageManager.proportionalScale(sourceImage, imageDisplayMode);
-            resizedInstances.put(imageDisplayMode, img);
+            putScaledInstance(sourceImage, imageDisplayMode, img);
         }
         return img;
     }
@@ -103,10 +202,10 @@ public class ImageCache implements IImageCache {
 
     @Override
     public BufferedImage proportionalScale(BufferedImage sourceImage, JComponent component) {
-        BufferedImage img = resizedInstances.get(AUTORESIZE);
+        BufferedImage img = getScaledInstance(sourceImage, AUTORESIZE);
         if (img == null || isInvalid(img, component)) {
             img = imageManager.proportionalScale(sourceImage, component);
-            resizedInstances.put(AUTORESIZE, img);
+            putScaledInstance(sourceImage, AUTORESIZE, img);
         }
         return img;
     }
@@ -117,12 +216,230 @@ public class ImageCache implements IImageCache {
     }
 
     @Override
-    public void setCurrentImage(final BufferedImage img) {
-        resizedInstances.put(FULLSIZE, img);
+    public final ScalingQuality getScalingQuality(final ImageDisplayMode imageDisplayMode) {
+        return imageManager.getScalingQuality(imageDisplayMode);
+    }
+
+    /**
+     * Sets the scaling quality of a display mode and drops the images already
+     * scaled for that mode with a different quality.
+     */
+    @Override
+    public synchronized void setScalingQuality(final ImageDisplayMode imageDisplayMode, final ScalingQuality quality) {
+        if (imageManager.getScalingQuality(imageDisplayMode) != quality) {
+            imageManager.setScalingQuality(imageDisplayMode, quality);
+            cache.values().forEach(cached -> size -= cached.remove(imageDisplayMode));
+        }
     }
 
     @Override
-    public void resetAutoscaleImage() {
-        resizedInstances.remove(AUTORESIZE);
+    public synchronized void resetAutoscaleImage() {
+        final CachedImage current = cache.get(currentKey);
+        if (current != null) {
+            size -= current.remove(AUTORESIZE);
+        }
+    }
+
+    private synchronized BufferedImage select(final Object key) {
+        final CachedImage cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        setCurrentKey(key);
+        return cached.image;
+    }
+
+    private synchronized BufferedImage peek(final Object key) {
+        final CachedImage cached = cache.get(key);
+        return cached != null ? cached.image : null;
+    }
+
+    private synchronized void put(final Object key, final BufferedImage img) {
+        setCurrentKey(key);
+        add(key, img);
+    }
+
+    /**
+     * Caches an image without a reusable key as the current image.
+     */
+    private synchronized void putAnonymous(final BufferedImage img) {
+        final Object key = new Object();
+        put(key, img);
+        anonymousKey = key;
+    }
+
+    /**
+     * Makes an entry the current one and drops the image without a reusable
+     * key that was current before, since it cannot be looked up again.
+     */
+    private void setCurrentKey(final Object key) {
+        if (anonymousKey != null && anonymousKey != key) {
+            final CachedImage dropped = cache.remove(anonymousKey);
+            if (dropped != null) {
+                size -= dropped.bytes;
+            }
+            anonymousKey = null;
+        }
+        currentKey = key;
+    }
+
+    private synchronized void add(final Object key, final BufferedImage img) {
+        final CachedImage previous = cache.put(key, new CachedImage(img));
+        if (previous != null) {
+            size -= previous.bytes;
+        }
+        size += sizeOf(img);
+        evict();
+    }
+
+    private synchronized BufferedImage getScaledInstance(final BufferedImage sourceImage, final ImageDisplayMode imageDisplayMode) {
+        final Object key = keyOf(sourceImage);
+        return key != null ? cache.get(key).scaledInstances.get(imageDisplayMode) : null;
+    }
+
+    private synchronized void putScaledInstance(final BufferedImage sourceImage, final ImageDisplayMode imageDisplayMode, final BufferedImage img) {
+        final Object key = keyOf(sourceImage);
+        if (key != null && img != null) {
+            final CachedImage cached = cache.get(key);
+            size -= cached.remove(imageDisplayMode);
+            size += cached.put(imageDisplayMode, img);
+            evict();
+        }
+    }
+
+    /**
+     * Finds the key of the cache entry holding the given full size image.
+     * Does not change the access order of the cache.
+     */
+    private Object keyOf(final BufferedImage img) {
+        if (img != null) {
+            for (Map.Entry<Object, CachedImage> entry : cache.entrySet()) {
+                if (entry.getValue().image == img) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Evicts least recently used entries until the cache fits into its budget.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<Object, CachedImage>> it = cache.entrySet().iterator();
+        while (size > budget && it.hasNext()) {
+            final Map.Entry<Object, CachedImage> entry = it.next();
+            if (!entry.getKey().equals(currentKey)) {
+                size -= entry.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    private static long getDefaultBudget() {
+        final String budget = System.getProperty(PROPERTY_BUDGET);
+        if (budget != null) {
+            try {
+                return Long.parseLong(budget.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + PROPERTY_BUDGET + ": " + budget);
+            }
+        }
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Gets the number of bytes occupied by the pixels of an image.
+     * @param img the image
+     * @return the size of the image's raster in bytes
+     */
+    static long sizeOf(final BufferedImage img) {
+        if (img == null) {
+            return 0;
+        }
+        final DataBuffer db = img.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks() * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+
+    /**
+     * Aborts a running decode once the decoding thread has been interrupted.
+     */
+    private static final class AbortOnInterrupt implements IIOReadProgressListener {
+
+        private volatile boolean aborted;
+
+        boolean isAborted() {
+            return aborted;
+        }
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            if (Thread.currentThread().isInterrupted()) {
+                source.abort();
+            }
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+            aborted = true;
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+        }
+
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+    }
+
+    /**
+     * A decoded full size image along with its scaled instances.
+     */
+    private static final class CachedImage {
+
+        private final BufferedImage image;
+        private final Map<ImageDisplayMode, BufferedImage> scaledInstances;
+        private long bytes;
+
+        CachedImage(final BufferedImage image) {
+            this.image = image;
+            this.scaledInstances = new EnumMap<>(ImageDisplayMode.class);
+            this.bytes = sizeOf(image);
+        }
+
+        long put(final ImageDisplayMode imageDisplayMode, final BufferedImage img) {
+            scaledInstances.put(imageDisplayMode, img);
+            final long added = img == image ? 0 : sizeOf(img);
+            bytes += added;
+            return added;
+        }
+
+        long remove(final ImageDisplayMode imageDisplayMode) {
+            final BufferedImage img = scaledInstances.remove(imageDisplayMode);
+            final long removed = img == null || img == image ? 0 : sizeOf(img);
+            bytes -= removed;
+            return removed;
+        }
     }
 }
\ No newline at end of file
@@ -1,72 +1,139 @@
 package com.tommybrettschneider.imageviewer.ui.preview;
 
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.event.IIOReadProgressListener;
 import javax.imageio.stream.ImageInputStream;
 import javax.swing.JComponent;
-import com.tommybrettschneider.imageviewer.util.ProxyConnection;
-import com.tommybrettschneider.imageviewer.util.ProxySettings;
+import com.tommybrettschneider.imageviewer.loader.ImageLoaders;
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
+import com.tommybrettschneider.imageviewer.util.UIUtils;
 
 public class ImageManager implements IImageManager {
 
     private static final GraphicsConfiguration GRAPHICS_CONFIGURATION;
 
     static {
-        GRAPHICS_CONFIGURATION = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+        // without a screen (e.g. when benchmarking) images are made compatible with an offscreen image
+        GRAPHICS_CONFIGURATION = GraphicsEnvironment.isHeadless()
+                ? new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics().getDeviceConfiguration()
+                : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
     }
 
+    private final Map<ImageDisplayMode, ScalingQuality> scalingQualities;
+
     public ImageManager() {
+        scalingQualities = new EnumMap<>(ImageDisplayMode.class);
+        for (ImageDisplayMode imageDisplayMode : ImageDisplayMode.values()) {
+            scalingQualities.put(imageDisplayMode, ScalingQuality.BALANCED);
+        }
+    }
+
+    @Override
+    public final synchronized ScalingQuality getScalingQuality(final ImageDisplayMode imageDisplayMode) {
+        return scalingQualities.get(imageDisplayMode);
+    }
+
+    @Override
+    public synchronized void setScalingQuality(final ImageDisplayMode imageDisplayMode, final ScalingQuality quality) {
+        scalingQualities.put(imageDisplayMode, quality);
     }
 
     @Override
     public final BufferedImage getImage(final File file) throws IOException {
-        return getImage(file.toURI());
+        try (ImageInputStream iis = ChannelImageInputStream.open(file)) {
+            return getImage(iis, null);
+        }
     }
 
     @Override
     public final BufferedImage getImage(final URI uri) throws IOException {
-        ProxySettings proxySettings = ProxySettings.getInstance();
-        proxySettings.setProxyUsername("username");
-        proxySettings.setProxyPassword("password");
-        proxySettings.setProxyAuthenticationEnabled(true);
-        return getImage(new ProxyConnection(uri.toURL().openConnection(), proxySettings).getInputStream(), null);
+        return getImage(uri, null);
     }
 
     public final BufferedImage getImage(final InputStream inputStream, final IIOReadProgressListener progressListener) throws IOException {
-        final BufferedImage img;
         try ( //return ImageIO.read(inputStream);
                 ImageInputStream iis = ImageIO.createImageInputStream(inputStream)) {
-            final ImageReader reader = ImageIO.getImageReaders(iis).next();
+            return getImage(iis, progressListener);
+        }
+    }
+
+    @Override
+    public BufferedImage getImage(final ImageInputStream iis) throws IOException {
+        return getImage(iis, (IIOReadProgressListener) null);
+    }
+
+    public final BufferedImage getImage(final ImageInputStream iis, final IIOReadProgressListener progressListener) throws IOException {
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageReader found for the given image");
+        }
+        final ImageReader reader = readers.next();
+        try {
             if (progressListener != null) {
                 reader.addIIOReadProgressListener(progressListener);
             }
             reader.setInput(iis, false, true);
-            img = toCompatibleImage(reader.read(0));
+            return toCompatibleImage(reader.read(0));
+        } finally {
             reader.dispose();
         }
-        return img;
     }
 
     @Override
     public final BufferedImage proportionalScale(final BufferedImage sourceImage, final int width, final int height) {
-        final int srcImgWidth = sourceImage.getWidth();
-        final int srcImgHeight = sourceImage.getHeight();
+        return proportionalScale(sourceImage, width, height, ScalingQuality.BALANCED);
+    }
+
+    /**
+     * Scale source image to given width and height with the given quality -
+     * keep aspect ratio of source image.
+     *
+     * @param sourceImage
+     * @param width
+     * @param height
+     * @param quality
+     * @return
+     */
+    public final BufferedImage proportionalScale(final BufferedImage sourceImage, final int width, final int height, final ScalingQuality quality) {
+        final Dimension size = getProportionalSize(sourceImage.getWidth(), sourceImage.getHeight(), width, height);
+        if (size.width == sourceImage.getWidth() && size.height == sourceImage.getHeight()) {
+            return sourceImage;
+        }
+        return Resampler.resize(sourceImage, size.width, size.height, quality);
+    }
+
+    /**
+     * Gets the size an image of the given size is scaled to by
+     * {@link #proportionalScale(BufferedImage, int, int)}: the largest size that
+     * fits into width and height, keeping the aspect ratio. Images are never
+     * enlarged.
+     *
+     * @param srcImgWidth
+     * @param srcImgHeight
+     * @param width
+     * @param height
+     * @return
+     */
+    public static Dimension getProportionalSize(final int srcImgWidth, final int srcImgHeight, final int width, final int height) {
         final float ar_src = (float) srcImgWidth / (float) srcImgHeight;
         final float ar = (float) width / (float) height;
 
         if ((srcImgWidth <= width) && (srcImgHeight <= height)) {
-            return sourceImage;
+            return new Dimension(srcImgWidth, srcImgHeight);
         } else {
             int v_width = width, v_height = height;
 
@@ -76,17 +143,21 @@ public class ImageManager implements IImageManager {
                 v_width = (int) (height * ar_src);
             }
 
-            final BufferedImage thumbnail = GRAPHICS_CONFIGURATION.createCompatibleImage(
-                    v_width, v_height, sourceImage.getTransparency());
-
-            final Graphics2D g2d = thumbnail.createGraphics();
-
-            g2d.drawImage(
-                    sourceImage.getScaledInstance(v_width, v_height, Image.SCALE_SMOOTH),
-                    0, 0, v_width, v_height, null);
+            return new Dimension(Math.max(1, v_width), Math.max(1, v_height));
+        }
+    }
 
-            g2d.dispose();
-            return thumbnail;
+    /**
+     * Reads the size of an image from its header without decoding it.
+     *
+     * @param file
+     * @return the size of the image or <code>null</code> if no reader is
+     * available for it
+     * @throws IOException
+     */
+    public static Dimension getImageSize(final File file) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(file)) {
+            return iis != null ? UIUtils.getImageSize(iis) : null;
         }
     }
 
@@ -103,7 +174,7 @@ public class ImageManager implements IImageManager {
     public final BufferedImage proportionalScale(final BufferedImage sourceImage, final JComponent component) {
         int width = component.getWidth() - component.getInsets().left - component.getInsets().right;
         int height = component.getHeight() - component.getInsets().top - component.getInsets().bottom;
-        return proportionalScale(sourceImage, width, height);
+        return proportionalScale(sourceImage, width, height, getScalingQuality(ImageDisplayMode.AUTORESIZE));
     }
 
     @Override
@@ -111,7 +182,7 @@ public class ImageManager implements IImageManager {
         float scale = imageDisplayMode.getScale();
         final int width = (int) (scale * sourceImage.getWidth(null));
         final int height = (int) (scale * sourceImage.getHeight(null));
-        return proportionalScale(sourceImage, width, height);
+        return proportionalScale(sourceImage, width, height, getScalingQuality(imageDisplayMode));
     }
 
     @Override
@@ -121,6 +192,8 @@ public class ImageManager implements IImageManager {
 
     @Override
     public BufferedImage getImage(URI uri, IIOReadProgressListener pl) throws IOException {
-        return getImage(uri.toURL().openStream(), pl);
+        try (ImageInputStream iis = ImageLoaders.getInstance().open(uri, pl)) {
+            return getImage(iis, pl);
+        }
     }
 }
\ No newline at end of file
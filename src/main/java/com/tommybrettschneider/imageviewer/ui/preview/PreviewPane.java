@@ -1,34 +1,56 @@
 package com.tommybrettschneider.imageviewer.ui.preview;
 
+import com.tommybrettschneider.imageviewer.loader.ImageLoaders;
+import com.tommybrettschneider.imageviewer.ui.thumbnail.ThumbnailDecoder;
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
 import com.tommybrettschneider.imageviewer.util.PopupListener;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Cursor;
+import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Insets;
+import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageReader;
 import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
+import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 
 import static com.tommybrettschneider.imageviewer.ui.preview.ImageDisplayMode.*;
 import java.util.logging.Logger;
@@ -40,6 +62,23 @@ public class PreviewPane extends JPanel implements IPreviewPane {
     
     private static final String CLASSPATH_IMG_INPROGRESS = "/wait.gif";
     private static final String PROPERTY_DISPLAYMODE = "displayMode";
+
+    /**
+     * The low resolution preview is decoded at this fraction of the pane's size.
+     */
+    private static final int LOW_RESOLUTION_FACTOR = 4;
+
+    /**
+     * Delay in ms after the last resize event before the image is rescaled in
+     * full quality; until then it is scaled with nearest neighbour sampling.
+     */
+    private static final int RESIZE_SETTLE_DELAY = 200;
+
+    /**
+     * Number of pixels above which local images are never decoded as a whole,
+     * see {@link TiledImageView}.
+     */
+    private static final long LARGE_IMAGE_THRESHOLD = Long.getLong("imageviewer.preview.large", 50_000_000L);
     
     private final IImageCache imageCache;
     private ImageIcon icon;
@@ -48,7 +87,63 @@ public class PreviewPane extends JPanel implements IPreviewPane {
     private ImageDisplayMode displayMode = AUTORESIZE;
     private JPopupMenu contextMenu;
     private ExecutorService executorService;
-    private Runnable refreshImageJob = new RefreshImageJob();
+    private final Object refreshJobLock = new Object();
+    private final AtomicInteger refreshGeneration = new AtomicInteger();
+    private Future<?> refreshJob;
+    private Image waitImg;
+    private volatile URI largeSource;
+    private TiledImageView tiledView;
+    private final List<Future<?>> prefetchJobs = new ArrayList<>();
+    private final AtomicInteger sourceGeneration = new AtomicInteger();
+    private final Timer resizeTimer;
+    private final IIOReadProgressListener progressListener = new IIOReadProgressListener() {
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageProgress(ImageReader source, final float percentageDone) {
+//                    SwingUtilities.invokeLater(new Runnable() {
+//                       public void run() {
+//                           progress.setValue((int)percentageDone);
+//                           progress.validate();
+//                           progress.revalidate();
+//                           progress.invalidate();
+//                           progress.repaint();
+//                           
+//                       } 
+//                    });
+            //System.out.println(percentageDone);
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+    };
 
     public static PreviewPane getPreviewPane() {
         return PreviewPane.getPreviewPane(AUTORESIZE, true);
@@ -70,27 +165,38 @@ public class PreviewPane extends JPanel implements IPreviewPane {
         super(new BorderLayout(0, 0));
         setOpaque(true);
         imageCache = new ImageCache();
+        resizeTimer = new Timer(RESIZE_SETTLE_DELAY, e -> {
+            if (getDisplayMode().equals(AUTORESIZE) && imageCache.getCurrentImage() != null) {
+                imageCache.resetAutoscaleImage();
+                refresh();
+            }
+        });
+        resizeTimer.setRepeats(false);
         addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
-                LOGGER.info("previewpane resized");
                 final BufferedImage currentImg = imageCache.getCurrentImage();
                 if (getDisplayMode().equals(AUTORESIZE) && currentImg != null) {
-                    final BufferedImage autoresizedImg = imageCache.proportionalScale(currentImg, AUTORESIZE);
-                    if (autoresizedImg == null
-                            || ((autoresizedImg.getHeight() > getHeight() || autoresizedImg.getWidth() != getWidth())
-                            && (autoresizedImg.getWidth() > getWidth() || autoresizedImg.getHeight() != getHeight()))) {
-                        imageCache.resetAutoscaleImage();
-                        executorService.execute(refreshImageJob);
-                    } else {
-                        // use cached image...
+                    final Insets insets = getInsets();
+                    final Dimension size = ImageManager.getProportionalSize(currentImg.getWidth(), currentImg.getHeight(),
+                            getWidth() - insets.left - insets.right, getHeight() - insets.top - insets.bottom);
+                    if (size.width != icon.getIconWidth() || size.height != icon.getIconHeight()) {
+                        // cheap interaction quality while resizing, full quality once it has settled
+                        showPreview(drawScaled(currentImg, size, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR));
+                        resizeTimer.restart();
                     }
                 }
             }
         });
         addPropertyChangeListener((PropertyChangeEvent e) -> {
-            if (e.getPropertyName().equals(PROPERTY_DISPLAYMODE) && imageCache.getCurrentImage() != null) {
-                executorService.execute(refreshImageJob);
+            if (e.getPropertyName().equals(PROPERTY_DISPLAYMODE)) {
+                final URI large = largeSource;
+                if (large != null) {
+                    // large images are decoded differently per display mode
+                    setSource(large, null);
+                } else if (imageCache.getCurrentImage() != null) {
+                    refresh();
+                }
             }
         });
     }
@@ -103,8 +209,27 @@ public class PreviewPane extends JPanel implements IPreviewPane {
      */
     @Override
     public void setSource(final InputStream is) throws Exception {
+        sourceGeneration.incrementAndGet();
+        largeSource = null;
         imageCache.getImage(is);
-        executorService.execute(refreshImageJob);
+        refresh();
+    }
+
+    /**
+     * Load source image from an image stream and display. The stream is
+     * closed afterwards.
+     *
+     * @param iis
+     * @throws java.lang.Exception
+     */
+    @Override
+    public void setSource(final ImageInputStream iis) throws Exception {
+        sourceGeneration.incrementAndGet();
+        largeSource = null;
+        try (ImageInputStream in = iis) {
+            imageCache.getImage(in);
+        }
+        refresh();
     }
 
     /**
@@ -126,56 +251,260 @@ public class PreviewPane extends JPanel implements IPreviewPane {
      */
     @Override
     public void setSource(final URI uri) throws Exception {
-        if (!imageCache.isCached(uri)) {
-            imageCache.getImage(uri, new IIOReadProgressListener() {
-                @Override
-                public void imageComplete(ImageReader source) {
-                }
+        setSource(uri, null);
+    }
 
-                @Override
-                public void imageProgress(ImageReader source, final float percentageDone) {
-//                    SwingUtilities.invokeLater(new Runnable() {
-//                       public void run() {
-//                           progress.setValue((int)percentageDone);
-//                           progress.validate();
-//                           progress.revalidate();
-//                           progress.invalidate();
-//                           progress.repaint();
-//                           
-//                       } 
-//                    });
-                    //System.out.println(percentageDone);
+    /**
+     * Load source image from url and display it progressively: the given
+     * placeholder (e.g. the thumbnail of the image) or, if there is none, a
+     * subsampled decode of the image is shown right away and replaced by the
+     * full quality image as soon as it has been decoded and scaled. Images
+     * already in the cache are shown directly.
+     *
+     * @param uri
+     * @param placeholder a low resolution version of the image, may be <code>null</code>
+     */
+    public void setSource(final URI uri, final Image placeholder) {
+        final int generation = sourceGeneration.incrementAndGet();
+        final boolean cached = imageCache.isCached(uri);
+        final boolean showPlaceholder = !cached && placeholder != null && getDisplayMode().equals(AUTORESIZE);
+        if (showPlaceholder) {
+            showPreview(scalePreview(placeholder, placeholder.getWidth(null), placeholder.getHeight(null), true));
+        }
+        executorService.execute(() -> {
+            if (!cached && isLarge(uri)) {
+                showLarge(uri, generation);
+                return;
+            }
+            if (!cached && !showPlaceholder && "file".equals(uri.getScheme())) {
+                // remote images are fetched once, in full
+                final BufferedImage lowRes = decodeLowResolution(uri);
+                if (lowRes != null && sourceGeneration.get() == generation) {
+                    showPreview(lowRes);
                 }
-
-                @Override
-                public void imageStarted(ImageReader source, int imageIndex) {
+            }
+            final BufferedImage img = imageCache.load(uri, progressListener);
+            synchronized (sourceGeneration) {
+                if (img == null || sourceGeneration.get() != generation) {
+                    return;
                 }
+                largeSource = null;
+                imageCache.setCurrentImage(img);
+            }
+            refresh();
+        });
+    }
 
-                @Override
-                public void readAborted(ImageReader source) {
+    /**
+     * Load source image from a stream opened in the background, e.g. on an
+     * archive entry, and display it. The given placeholder is shown until the
+     * image has been decoded, so reading the stream, which may decompress an
+     * archive first, does not block the caller.
+     *
+     * @param opener opens the stream, which is closed afterwards
+     * @param placeholder a low resolution version of the image, may be <code>null</code>
+     */
+    public void setSource(final Callable<? extends ImageInputStream> opener, final Image placeholder) {
+        final int generation = sourceGeneration.incrementAndGet();
+        if (placeholder != null && getDisplayMode().equals(AUTORESIZE)) {
+            showPreview(scalePreview(placeholder, placeholder.getWidth(null), placeholder.getHeight(null), true));
+        }
+        executorService.execute(() -> {
+            if (sourceGeneration.get() != generation) {
+                return;
+            }
+            final BufferedImage img;
+            try (ImageInputStream iis = opener.call()) {
+                img = imageCache.decode(iis);
+            } catch (Exception e) {
+                LOGGER.warning(e.getMessage());
+                return;
+            }
+            synchronized (sourceGeneration) {
+                if (img == null || sourceGeneration.get() != generation) {
+                    return;
                 }
+                largeSource = null;
+                imageCache.setCurrentImage(img);
+            }
+            refresh();
+        });
+    }
 
-                @Override
-                public void sequenceComplete(ImageReader source) {
-                }
+    /**
+     * Checks whether the image is a local file with more pixels than
+     * {@link #LARGE_IMAGE_THRESHOLD}.
+     */
+    private static boolean isLarge(final URI uri) {
+        if (!"file".equals(uri.getScheme())) {
+            return false;
+        }
+        try {
+            final Dimension size = ImageManager.getImageSize(new File(uri));
+            return size != null && (long) size.width * size.height > LARGE_IMAGE_THRESHOLD;
+        } catch (IOException e) {
+            LOGGER.warning(e.getMessage());
+            return false;
+        }
+    }
 
-                @Override
-                public void sequenceStarted(ImageReader source, int minIndex) {
+    /**
+     * Displays a large image without decoding it as a whole: in auto-resize
+     * mode a subsampled version fitting the pane is decoded, in the other
+     * modes the image is shown by a {@link TiledImageView}.
+     */
+    private void showLarge(final URI uri, final int generation) {
+        final File file = new File(uri);
+        if (getDisplayMode().equals(AUTORESIZE)) {
+            final BufferedImage img;
+            try (ImageInputStream iis = ChannelImageInputStream.open(file)) {
+                img = ThumbnailDecoder.read(iis, Math.max(1, getWidth()), Math.max(1, getHeight()));
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+                return;
+            }
+            synchronized (sourceGeneration) {
+                if (img == null || sourceGeneration.get() != generation) {
+                    return;
                 }
-
-                @Override
-                public void thumbnailComplete(ImageReader source) {
+                largeSource = uri;
+                imageCache.setCurrentImage(img);
+            }
+            refresh();
+        } else {
+            final Dimension size;
+            try {
+                size = ImageManager.getImageSize(file);
+            } catch (IOException e) {
+                LOGGER.warning(e.getMessage());
+                return;
+            }
+            final TiledImageView view = new TiledImageView(file, size.width, size.height, getDisplayMode().getScale(), executorService);
+            SwingUtilities.invokeLater(() -> {
+                if (sourceGeneration.get() != generation) {
+                    view.dispose();
+                    return;
                 }
-
-                @Override
-                public void thumbnailProgress(ImageReader source, float percentageDone) {
+                largeSource = uri;
+                view.addMouseListener(new PopupListener(getContextMenu()));
+                if (isDnDEnabled() && StringUtils.isNotBlank(label.getText())) {
+                    label.setText(null);
                 }
+                tiledView = view;
+                setView(view);
+                revalidate();
+                repaint();
+            });
+        }
+    }
 
-                @Override
-                public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+    /**
+     * Shows the given component in the scrollpane, disposing a tiled view it
+     * replaces.
+     */
+    private void setView(final JComponent view) {
+        if (tiledView != null && tiledView != view) {
+            tiledView.dispose();
+            tiledView = null;
+        }
+        if (scrollpane.getViewport().getView() != view) {
+            scrollpane.setViewportView(view);
+        }
+    }
+
+    /**
+     * Decodes a subsampled version of the image, just large enough to give an
+     * impression of it, and scales it up to the size the full image will be
+     * displayed at.
+     */
+    private BufferedImage decodeLowResolution(final URI uri) {
+        final Dimension sourceSize = new Dimension();
+        final BufferedImage img;
+        try (ImageInputStream iis = ImageLoaders.getInstance().open(uri)) {
+            img = ThumbnailDecoder.read(iis, Math.max(1, getWidth() / LOW_RESOLUTION_FACTOR), Math.max(1, getHeight() / LOW_RESOLUTION_FACTOR), sourceSize);
+        } catch (IOException e) {
+            LOGGER.warning(e.getMessage());
+            return null;
+        }
+        if (img == null) {
+            return null;
+        }
+        return scalePreview(img, sourceSize.width, sourceSize.height, false);
+    }
+
+    /**
+     * Scales a low resolution image to the size an image of the given source
+     * size is displayed at in the current display mode, favouring speed over
+     * quality.
+     *
+     * @param img the image to scale
+     * @param sourceWidth the width of the full image
+     * @param sourceHeight the height of the full image
+     * @param enlarge whether the full image may be enlarged to fit the pane
+     */
+    private BufferedImage scalePreview(final Image img, final int sourceWidth, final int sourceHeight, final boolean enlarge) {
+        final Dimension size;
+        if (getDisplayMode().equals(AUTORESIZE)) {
+            final Insets insets = getInsets();
+            final int width = getWidth() - insets.left - insets.right;
+            final int height = getHeight() - insets.top - insets.bottom;
+            if (enlarge) {
+                final double scale = Math.min((double) width / sourceWidth, (double) height / sourceHeight);
+                size = new Dimension(Math.max(1, (int) (sourceWidth * scale)), Math.max(1, (int) (sourceHeight * scale)));
+            } else {
+                size = ImageManager.getProportionalSize(sourceWidth, sourceHeight, width, height);
+            }
+        } else {
+            final float scale = getDisplayMode().getScale();
+            size = new Dimension(Math.max(1, (int) (sourceWidth * scale)), Math.max(1, (int) (sourceHeight * scale)));
+        }
+        return drawScaled(img, size, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    }
+
+    private static BufferedImage drawScaled(final Image img, final Dimension size, final Object interpolation) {
+        final BufferedImage scaled = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        final Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g2d.drawImage(img, 0, 0, size.width, size.height, null);
+        g2d.dispose();
+        return scaled;
+    }
+
+    private void showPreview(final BufferedImage img) {
+        final Runnable show = () -> {
+            if (isDnDEnabled() && StringUtils.isNotBlank(label.getText())) {
+                label.setText(null);
+            }
+            setView(label);
+            icon.setImage(img);
+            label.invalidate();
+            revalidate();
+            repaint(250);
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            show.run();
+        } else {
+            SwingUtilities.invokeLater(show);
+        }
+    }
+
+    /**
+     * Decodes and scales the given images in the background so they can be
+     * displayed without delay later on. Prefetches still pending from a
+     * previous call are cancelled.
+     *
+     * @param uris the images to prefetch, most important first
+     */
+    public void prefetch(final List<URI> uris) {
+        synchronized (prefetchJobs) {
+            prefetchJobs.forEach(job -> job.cancel(true));
+            prefetchJobs.clear();
+            final ImageDisplayMode mode = getDisplayMode();
+            uris.forEach(uri -> prefetchJobs.add(executorService.submit(() -> {
+                if (!Thread.currentThread().isInterrupted()) {
+                    imageCache.prefetch(uri, mode, PreviewPane.this);
                 }
-            });
-            executorService.execute(refreshImageJob);
+            })));
         }
     }
 
@@ -185,7 +514,7 @@ public class PreviewPane extends JPanel implements IPreviewPane {
     @Override
     public void setDisplayMode(final ImageDisplayMode displayMode) {
         if (!this.displayMode.equals(displayMode)) {
-            firePropertyChange(PROPERTY_DISPLAYMODE, this.displayMode, displayMode);
+            final ImageDisplayMode oldDisplayMode = this.displayMode;
             this.displayMode = displayMode;
 
             if (getDisplayMode().equals(AUTORESIZE)) {
@@ -196,6 +525,7 @@ public class PreviewPane extends JPanel implements IPreviewPane {
                 scrollpane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
                 scrollpane.setRequestFocusEnabled(true);
             }
+            firePropertyChange(PROPERTY_DISPLAYMODE, oldDisplayMode, displayMode);
         }
     }
 
@@ -213,6 +543,32 @@ public class PreviewPane extends JPanel implements IPreviewPane {
                 btnGroup.add(item);
                 contextMenu.add(item);
             }
+            contextMenu.addSeparator();
+            final JMenu qualityMenu = new JMenu("Quality");
+            final ButtonGroup qualityGroup = new ButtonGroup();
+            final Map<ScalingQuality, JMenuItem> qualityItems = new EnumMap<>(ScalingQuality.class);
+            for (ScalingQuality quality : ScalingQuality.values()) {
+                JMenuItem item = new JRadioButtonMenuItem(new ScalingQualityAction(quality));
+                qualityGroup.add(item);
+                qualityMenu.add(item);
+                qualityItems.put(quality, item);
+            }
+            contextMenu.add(qualityMenu);
+            contextMenu.addPopupMenuListener(new PopupMenuListener() {
+                @Override
+                public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                    // the quality is chosen per display mode
+                    qualityItems.get(imageCache.getScalingQuality(getDisplayMode())).setSelected(true);
+                }
+
+                @Override
+                public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+                }
+
+                @Override
+                public void popupMenuCanceled(PopupMenuEvent e) {
+                }
+            });
         }
         return contextMenu;
     }
@@ -271,51 +627,73 @@ public class PreviewPane extends JPanel implements IPreviewPane {
         }
     }
 
+    /**
+     *
+     */
+    private class ScalingQualityAction extends AbstractAction {
+
+        private final ScalingQuality quality;
+
+        public ScalingQualityAction(ScalingQuality quality) {
+            super(quality.getLabel());
+            this.quality = quality;
+        }
+
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            imageCache.setScalingQuality(getDisplayMode(), quality);
+            if (tiledView == null && imageCache.getCurrentImage() != null) {
+                refresh();
+            }
+        }
+    }
+
     @Override
     public void setSource(final BufferedImage img) {
-        imageCache.setCurrentImage(img);
-        executorService.execute(refreshImageJob);
+        synchronized (sourceGeneration) {
+            sourceGeneration.incrementAndGet();
+            largeSource = null;
+            imageCache.setCurrentImage(img);
+        }
+        refresh();
     }
 
-    private final class RefreshImageJob implements Runnable {
-
-        private final Image waitImg = new ImageIcon(getClass().getResource(CLASSPATH_IMG_INPROGRESS)).getImage();
-        private final Runnable preProcessRunnable = () -> {
-            PreviewPane.this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-            icon.setImage(waitImg);
-            if (isDnDEnabled() && StringUtils.isNotBlank(label.getText())) {
-                label.setText(null);
+    /**
+     * Rescales the current image for display in the background. A rescale
+     * still in progress is cancelled, so only the latest size is computed.
+     */
+    private void refresh() {
+        synchronized (refreshJobLock) {
+            if (refreshJob != null) {
+                refreshJob.cancel(true);
             }
-            label.invalidate();
-            revalidate();
-            repaint(250);
-        };
-        private final PostProcessRunnable postProcessRunnable = new PostProcessRunnable();
-
-        private final class PostProcessRunnable implements Runnable {
+            refreshJob = executorService.submit(new RefreshImageJob(refreshGeneration.incrementAndGet()));
+        }
+    }
 
-            private BufferedImage bufImg;
+    private final class RefreshImageJob implements Runnable {
 
-            public void setNewImage(BufferedImage bufImg) {
-                this.bufImg = bufImg;
-            }
+        private final int generation;
 
-            @Override
-            public void run() {
-                icon.setImage(bufImg);
-                label.invalidate();
-                revalidate();
-                repaint(250);
-                PreviewPane.this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
-            }
-        };
+        RefreshImageJob(final int generation) {
+            this.generation = generation;
+        }
 
         @Override
         public void run() {
             preProcess();
-            final BufferedImage bufImg = processImage();
+            final BufferedImage bufImg;
+            try {
+                bufImg = processImage();
+            } catch (CancellationException e) {
+                // superseded by a newer refresh
+                return;
+            }
             postProcess(bufImg);
-            requestFocusInWindow();
+        }
+
+        private boolean isCurrent() {
+            return refreshGeneration.get() == generation;
         }
 
         private BufferedImage processImage() {
@@ -324,29 +702,54 @@ public class PreviewPane extends JPanel implements IPreviewPane {
                 bufImg = imageCache.proportionalScale(imageCache.getCurrentImage(), PreviewPane.this);
             } else {
                 bufImg = imageCache.proportionalScale(imageCache.getCurrentImage(), displayMode);
-                if (scrollpane.isVisible()) {
-                    scrollpane.requestFocusInWindow();
-                }
             }
             return bufImg;
         }
 
         private void postProcess(final BufferedImage bufImg) {
-            postProcessRunnable.setNewImage(bufImg);
-            try {
-                SwingUtilities.invokeAndWait(postProcessRunnable);
-            } catch (InterruptedException | InvocationTargetException e) {
-                // TODO
-            }
+            SwingUtilities.invokeLater(() -> {
+                if (!isCurrent()) {
+                    return;
+                }
+                setView(label);
+                icon.setImage(bufImg);
+                label.invalidate();
+                revalidate();
+                repaint(250);
+                PreviewPane.this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+                if (!displayMode.equals(AUTORESIZE) && scrollpane.isVisible()) {
+                    scrollpane.requestFocusInWindow();
+                } else {
+                    requestFocusInWindow();
+                }
+            });
         }
 
         private void preProcess() {
-            try {
-                SwingUtilities.invokeAndWait(preProcessRunnable);
-            } catch (InterruptedException | InvocationTargetException e) {
-                // TODO
-            }
+            SwingUtilities.invokeLater(() -> {
+                if (!isCurrent()) {
+                    return;
+                }
+                PreviewPane.this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                if (icon.getImage() == null) {
+                    // keep showing the previous or the low resolution image until the new one is ready
+                    icon.setImage(getWaitImage());
+                }
+                if (isDnDEnabled() && StringUtils.isNotBlank(label.getText())) {
+                    label.setText(null);
+                }
+                label.invalidate();
+                revalidate();
+                repaint(250);
+            });
+        }
+    }
+
+    private Image getWaitImage() {
+        if (waitImg == null) {
+            waitImg = new ImageIcon(getClass().getResource(CLASSPATH_IMG_INPROGRESS)).getImage();
         }
+        return waitImg;
     }
 
     protected JLabel getLabel() {
@@ -102,7 +102,7 @@ public class PreviewableTransferHandler extends TransferHandler {
                     ZipEntryThumbnail zipThumb;
                     try {
                         zipThumb = getZipEntryFromDnD(t);
-                        previewPane.setSource(zipThumb.getInputStream());
+                        previewPane.setSource(zipThumb::getImageInputStream, zipThumb.getThumbnailImage());
                     } catch (Exception ex) {
                         ex.printStackTrace();
                     }
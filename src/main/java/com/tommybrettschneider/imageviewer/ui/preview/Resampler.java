@@ -0,0 +1,347 @@
+package com.tommybrettschneider.imageviewer.ui.preview;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resizes images on packed <code>int[]</code> rasters.
+ *
+ * Large reductions are done by repeatedly halving the image with a 2x2 box
+ * filter, which is cheap and free of aliasing. The remaining reduction is done
+ * by two separable convolution passes with the filter of the requested
+ * {@link ScalingQuality}. All passes process bands of rows in parallel on a
+ * fork-join pool. Translucent images are filtered with premultiplied alpha.
+ * Interrupting the calling thread cancels a resize in progress.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class Resampler {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Number of rows below which a band is not split any further.
+     */
+    private static final int ROWS_PER_TASK = 16;
+
+    private static final int WEIGHT_BITS = 14;
+    private static final int WEIGHT_ONE = 1 << WEIGHT_BITS;
+
+    private Resampler() {}
+
+    /**
+     * Resampling filters for the final, separable pass.
+     */
+    enum Filter {
+
+        BILINEAR(1) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                return x < 1 ? 1 - x : 0;
+            }
+        },
+        MITCHELL(2) {
+            @Override
+            double weight(double x) {
+                // Mitchell-Netravali with B = C = 1/3
+                final double b = 1.0 / 3, c = 1.0 / 3;
+                x = Math.abs(x);
+                if (x < 1) {
+                    return ((12 - 9 * b - 6 * c) * x * x * x + (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6;
+                } else if (x < 2) {
+                    return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x + (-12 * b - 48 * c) * x + (8 * b + 24 * c)) / 6;
+                }
+                return 0;
+            }
+        },
+        LANCZOS3(3) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1e-8) {
+                    return 1;
+                } else if (x < 3) {
+                    final double px = Math.PI * x;
+                    return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+                }
+                return 0;
+            }
+        };
+
+        private final double support;
+
+        Filter(double support) {
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+    }
+
+    /**
+     * Resizes an image.
+     * @param sourceImage the image to resize
+     * @param width the width of the resized image
+     * @param height the height of the resized image
+     * @param quality the quality to resize with
+     * @return the resized image, of type <code>TYPE_INT_RGB</code> for opaque and
+     * <code>TYPE_INT_ARGB_PRE</code> for translucent images
+     * @throws CancellationException if the calling thread is interrupted while resizing
+     */
+    public static BufferedImage resize(final BufferedImage sourceImage, final int width, final int height, final ScalingQuality quality) {
+        final boolean opaque = sourceImage.getTransparency() == Transparency.OPAQUE;
+        final int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+        final BufferedImage src = sourceImage.getType() == type ? sourceImage : convert(sourceImage, type);
+
+        final Raster raster = src.getRaster();
+        RowSource rows = (y, row) -> raster.getDataElements(0, y, row.length, 1, row);
+        int w = src.getWidth();
+        int h = src.getHeight();
+        final int limit = quality.getHalvingLimit();
+        while (w / 2 >= width * limit && h / 2 >= height * limit) {
+            final int[] halved = halve(rows, w, h);
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+            rows = arrayRows(halved, w);
+        }
+
+        final int[] scaled;
+        if (w == width && h == height) {
+            scaled = new int[w * h];
+            for (int y = 0; y < h; y++) {
+                final int[] row = new int[w];
+                rows.read(y, row);
+                System.arraycopy(row, 0, scaled, y * w, w);
+            }
+        } else {
+            final int[] horizontal = resizeHorizontally(rows, w, h, width, quality.getFilter(), opaque);
+            scaled = resizeVertically(horizontal, width, h, height, quality.getFilter(), opaque);
+        }
+        final BufferedImage img = new BufferedImage(width, height, type);
+        img.getRaster().setDataElements(0, 0, width, height, scaled);
+        return img;
+    }
+
+    private static BufferedImage convert(final BufferedImage sourceImage, final int type) {
+        final BufferedImage img = new BufferedImage(sourceImage.getWidth(), sourceImage.getHeight(), type);
+        final Graphics2D g2d = img.createGraphics();
+        g2d.drawImage(sourceImage, 0, 0, null);
+        g2d.dispose();
+        return img;
+    }
+
+    /**
+     * Halves an image with a 2x2 box filter. An odd last column or row is
+     * averaged with itself.
+     */
+    private static int[] halve(final RowSource rows, final int w, final int h) {
+        final int dw = (w + 1) / 2;
+        final int dh = (h + 1) / 2;
+        final int[] dst = new int[dw * dh];
+        forEachBand(dh, (from, to) -> {
+            final int[] row0 = new int[w];
+            final int[] row1 = new int[w];
+            for (int y = from; y < to; y++) {
+                rows.read(2 * y, row0);
+                rows.read(Math.min(2 * y + 1, h - 1), row1);
+                int offset = y * dw;
+                for (int x = 0; x < w; x += 2) {
+                    final int x1 = Math.min(x + 1, w - 1);
+                    final int p0 = row0[x], p1 = row0[x1], p2 = row1[x], p3 = row1[x1];
+                    final int a = ((p0 >>> 24) + (p1 >>> 24) + (p2 >>> 24) + (p3 >>> 24) + 2) >> 2;
+                    final int r = (((p0 >> 16) & 0xFF) + ((p1 >> 16) & 0xFF) + ((p2 >> 16) & 0xFF) + ((p3 >> 16) & 0xFF) + 2) >> 2;
+                    final int g = (((p0 >> 8) & 0xFF) + ((p1 >> 8) & 0xFF) + ((p2 >> 8) & 0xFF) + ((p3 >> 8) & 0xFF) + 2) >> 2;
+                    final int b = ((p0 & 0xFF) + (p1 & 0xFF) + (p2 & 0xFF) + (p3 & 0xFF) + 2) >> 2;
+                    dst[offset++] = a << 24 | r << 16 | g << 8 | b;
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static int[] resizeHorizontally(final RowSource rows, final int w, final int h, final int dw, final Filter filter, final boolean opaque) {
+        final Contributions contributions = new Contributions(w, dw, filter);
+        final int[] dst = new int[dw * h];
+        forEachBand(h, (from, to) -> {
+            final int[] row = new int[w];
+            for (int y = from; y < to; y++) {
+                rows.read(y, row);
+                final int offset = y * dw;
+                for (int x = 0; x < dw; x++) {
+                    final int first = contributions.first[x];
+                    final int[] weights = contributions.weights[x];
+                    int a = 0, r = 0, g = 0, b = 0;
+                    for (int i = 0; i < weights.length; i++) {
+                        final int p = row[first + i];
+                        final int weight = weights[i];
+                        a += (p >>> 24) * weight;
+                        r += ((p >> 16) & 0xFF) * weight;
+                        g += ((p >> 8) & 0xFF) * weight;
+                        b += (p & 0xFF) * weight;
+                    }
+                    dst[offset + x] = pack(a, r, g, b, opaque);
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static int[] resizeVertically(final int[] src, final int w, final int h, final int dh, final Filter filter, final boolean opaque) {
+        final Contributions contributions = new Contributions(h, dh, filter);
+        final int[] dst = new int[w * dh];
+        forEachBand(dh, (from, to) -> {
+            final int[] a = new int[w], r = new int[w], g = new int[w], b = new int[w];
+            for (int y = from; y < to; y++) {
+                Arrays.fill(a, 0);
+                Arrays.fill(r, 0);
+                Arrays.fill(g, 0);
+                Arrays.fill(b, 0);
+                final int first = contributions.first[y];
+                final int[] weights = contributions.weights[y];
+                for (int i = 0; i < weights.length; i++) {
+                    final int weight = weights[i];
+                    final int offset = (first + i) * w;
+                    for (int x = 0; x < w; x++) {
+                        final int p = src[offset + x];
+                        a[x] += (p >>> 24) * weight;
+                        r[x] += ((p >> 16) & 0xFF) * weight;
+                        g[x] += ((p >> 8) & 0xFF) * weight;
+                        b[x] += (p & 0xFF) * weight;
+                    }
+                }
+                final int offset = y * w;
+                for (int x = 0; x < w; x++) {
+                    dst[offset + x] = pack(a[x], r[x], g[x], b[x], opaque);
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Packs the weighted channel sums into a pixel. Color channels of
+     * premultiplied pixels must not exceed the alpha channel.
+     */
+    private static int pack(final int a, final int r, final int g, final int b, final boolean opaque) {
+        final int alpha = opaque ? 0xFF : clamp(a, 0xFF);
+        return alpha << 24 | clamp(r, alpha) << 16 | clamp(g, alpha) << 8 | clamp(b, alpha);
+    }
+
+    private static int clamp(final int sum, final int max) {
+        final int value = (sum + (WEIGHT_ONE >> 1)) >> WEIGHT_BITS;
+        return value < 0 ? 0 : (value > max ? max : value);
+    }
+
+    /**
+     * Applies an operation to bands of rows on the pool. The bands not yet
+     * started are skipped as soon as the calling thread is interrupted.
+     */
+    private static void forEachBand(final int rows, final RowOperation operation) {
+        final Thread caller = Thread.currentThread();
+        POOL.invoke(new RowTask(0, rows, (from, to) -> {
+            if (caller.isInterrupted()) {
+                throw new CancellationException();
+            }
+            operation.apply(from, to);
+        }));
+    }
+
+    private static RowSource arrayRows(final int[] pixels, final int w) {
+        return (y, row) -> System.arraycopy(pixels, y * w, row, 0, w);
+    }
+
+    /**
+     * Reads one row of packed pixels.
+     */
+    @FunctionalInterface
+    private interface RowSource {
+        void read(int y, int[] row);
+    }
+
+    /**
+     * Processes a band of rows.
+     */
+    @FunctionalInterface
+    private interface RowOperation {
+        void apply(int from, int to);
+    }
+
+    /**
+     * Splits a range of rows into bands processed in parallel.
+     */
+    private static final class RowTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final RowOperation operation;
+
+        RowTask(final int from, final int to, final RowOperation operation) {
+            this.from = from;
+            this.to = to;
+            this.operation = operation;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ROWS_PER_TASK) {
+                operation.apply(from, to);
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(from, middle, operation), new RowTask(middle, to, operation));
+            }
+        }
+    }
+
+    /**
+     * Fixed-point filter weights of the source pixels contributing to each
+     * destination pixel along one axis.
+     */
+    private static final class Contributions {
+
+        private final int[] first;
+        private final int[][] weights;
+
+        Contributions(final int srcSize, final int dstSize, final Filter filter) {
+            first = new int[dstSize];
+            weights = new int[dstSize][];
+            final double scale = (double) dstSize / srcSize;
+            // when downscaling, the filter is stretched to cover all source pixels
+            final double stretch = Math.max(1, 1 / scale);
+            final double support = filter.support * stretch;
+            final double[] w = new double[(int) Math.ceil(support) * 2 + 2];
+            for (int i = 0; i < dstSize; i++) {
+                final double center = (i + 0.5) / scale - 0.5;
+                final int left = Math.max(0, (int) Math.ceil(center - support));
+                final int right = Math.min(srcSize - 1, (int) Math.floor(center + support));
+                double sum = 0;
+                for (int j = left; j <= right; j++) {
+                    w[j - left] = filter.weight((j - center) / stretch);
+                    sum += w[j - left];
+                }
+                if (sum == 0) {
+                    sum = 1;
+                }
+                final int n = right - left + 1;
+                final int[] fixed = new int[n];
+                int fixedSum = 0;
+                int largest = 0;
+                for (int j = 0; j < n; j++) {
+                    fixed[j] = (int) Math.round(w[j] / sum * WEIGHT_ONE);
+                    fixedSum += fixed[j];
+                    if (fixed[j] > fixed[largest]) {
+                        largest = j;
+                    }
+                }
+                fixed[largest] += WEIGHT_ONE - fixedSum; // weights must sum up to exactly one
+                first[i] = left;
+                weights[i] = fixed;
+            }
+        }
+    }
+}
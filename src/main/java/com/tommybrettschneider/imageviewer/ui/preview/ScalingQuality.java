@@ -0,0 +1,49 @@
+package com.tommybrettschneider.imageviewer.ui.preview;
+
+/**
+ * Trade-off between speed and quality when downscaling images, see {@link Resampler}.
+ *
+ * @author Tommy Brettschneider
+ */
+public enum ScalingQuality {
+
+    /**
+     * Box halving down to the target size, finished by a bilinear pass.
+     */
+    FAST("Fast", Resampler.Filter.BILINEAR, 1),
+    /**
+     * Box halving down to twice the target size, finished by a Mitchell-Netravali pass.
+     */
+    BALANCED("Balanced", Resampler.Filter.MITCHELL, 2),
+    /**
+     * Box halving down to three times the target size, finished by a Lanczos3 pass.
+     */
+    BEST("Best", Resampler.Filter.LANCZOS3, 3);
+
+    ScalingQuality(String label, Resampler.Filter filter, int halvingLimit) {
+        this.label = label;
+        this.filter = filter;
+        this.halvingLimit = halvingLimit;
+    }
+
+    public String getLabel() {
+        return this.label;
+    }
+
+    Resampler.Filter getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * Gets the multiple of the target size below which the image is no longer
+     * halved before applying the filter.
+     * @return the halving limit
+     */
+    int getHalvingLimit() {
+        return this.halvingLimit;
+    }
+
+    private final String label;
+    private final Resampler.Filter filter;
+    private final int halvingLimit;
+}
@@ -0,0 +1,250 @@
+package com.tommybrettschneider.imageviewer.ui.preview;
+
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Displays an image too large to be decoded as a whole at a fixed scale.
+ *
+ * The image is divided into tiles of {@link #TILE_SIZE} display pixels. Only
+ * the tiles intersecting the visible area are decoded, each with
+ * <code>ImageReadParam.setSourceRegion</code> and, for reduced scales, source
+ * subsampling. Decoded tiles are kept in a bounded LRU cache; missing tiles
+ * are decoded in the background and painted as soon as they are available.
+ *
+ * @author Tommy Brettschneider
+ */
+public class TiledImageView extends JComponent {
+
+    private static final Logger LOGGER = Logger.getLogger(TiledImageView.class.getName());
+
+    private static final String PROPERTY_CACHED_TILES = "imageviewer.preview.tiles";
+
+    /**
+     * Edge length of a tile in display pixels.
+     */
+    public static final int TILE_SIZE = 512;
+
+    private static final Color PLACEHOLDER_COLOR = new Color(0xEEEEEE);
+
+    private final File file;
+    private final int imageWidth;
+    private final int imageHeight;
+    private final float scale;
+    private final int subsampling;
+    private final ExecutorService executorService;
+    private final Map<Point, BufferedImage> tiles;
+    private final Set<Point> pending = new HashSet<>();
+    private final Object readerLock = new Object();
+    private volatile Rectangle visible = new Rectangle();
+    private volatile boolean disposed;
+    private volatile boolean broken;
+    private ImageInputStream iis;
+    private volatile ImageReader reader;
+
+    /**
+     * Constructor.
+     *
+     * @param file the image file
+     * @param imageWidth the width of the image
+     * @param imageHeight the height of the image
+     * @param scale the scale to display the image at
+     * @param executorService the executor to decode tiles on
+     */
+    public TiledImageView(final File file, final int imageWidth, final int imageHeight, final float scale, final ExecutorService executorService) {
+        this.file = file;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        this.scale = scale;
+        this.subsampling = Math.max(1, (int) (1 / scale));
+        this.executorService = executorService;
+        final int maxTiles = Integer.getInteger(PROPERTY_CACHED_TILES, 64);
+        this.tiles = new LinkedHashMap<Point, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Point, BufferedImage> eldest) {
+                return size() > maxTiles;
+            }
+        };
+        setPreferredSize(new Dimension(Math.max(1, (int) Math.ceil(imageWidth * scale)), Math.max(1, (int) Math.ceil(imageHeight * scale))));
+    }
+
+    @Override
+    protected void paintComponent(final Graphics g) {
+        final Rectangle clip = g.getClipBounds() != null ? g.getClipBounds() : getVisibleRect();
+        visible = getVisibleRect();
+        final Dimension size = getPreferredSize();
+        final int firstCol = Math.max(0, clip.x / TILE_SIZE);
+        final int firstRow = Math.max(0, clip.y / TILE_SIZE);
+        final int lastCol = Math.min((size.width - 1) / TILE_SIZE, (clip.x + clip.width - 1) / TILE_SIZE);
+        final int lastRow = Math.min((size.height - 1) / TILE_SIZE, (clip.y + clip.height - 1) / TILE_SIZE);
+        final Graphics2D g2d = (Graphics2D) g.create();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    final Point tile = new Point(col, row);
+                    final Rectangle bounds = getTileBounds(tile);
+                    final BufferedImage img;
+                    synchronized (this) {
+                        img = tiles.get(tile);
+                    }
+                    if (img != null) {
+                        g2d.drawImage(img, bounds.x, bounds.y, bounds.width, bounds.height, null);
+                    } else {
+                        g2d.setColor(PLACEHOLDER_COLOR);
+                        g2d.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                        request(tile);
+                    }
+                }
+            }
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Drops all decoded tiles and closes the image file. A tile still being
+     * decoded is aborted; the file is closed on the executor once the decode
+     * has ended, so the calling thread does not wait for it.
+     */
+    public void dispose() {
+        disposed = true;
+        synchronized (this) {
+            tiles.clear();
+        }
+        final ImageReader current = reader;
+        if (current != null) {
+            current.abort();
+        }
+        try {
+            executorService.execute(this::close);
+        } catch (RejectedExecutionException e) {
+            close();
+        }
+    }
+
+    private void close() {
+        synchronized (readerLock) {
+            if (reader != null) {
+                reader.dispose();
+                reader = null;
+            }
+            if (iis != null) {
+                try {
+                    iis.close();
+                } catch (IOException e) {
+                    LOGGER.warning(e.getMessage());
+                }
+                iis = null;
+            }
+        }
+    }
+
+    private Rectangle getTileBounds(final Point tile) {
+        final Dimension size = getPreferredSize();
+        final int x = tile.x * TILE_SIZE;
+        final int y = tile.y * TILE_SIZE;
+        return new Rectangle(x, y, Math.min(TILE_SIZE, size.width - x), Math.min(TILE_SIZE, size.height - y));
+    }
+
+    private synchronized void request(final Point tile) {
+        if (disposed || broken || !pending.add(tile)) {
+            return;
+        }
+        executorService.execute(() -> {
+            try {
+                load(tile);
+            } finally {
+                synchronized (TiledImageView.this) {
+                    pending.remove(tile);
+                }
+            }
+        });
+    }
+
+    private void load(final Point tile) {
+        final Rectangle bounds = getTileBounds(tile);
+        if (disposed || !visible.intersects(bounds)) {
+            // scrolled out of view before its turn came, requested again when painted
+            return;
+        }
+        final BufferedImage img;
+        try {
+            img = decode(bounds);
+        } catch (IOException e) {
+            LOGGER.warning(e.getMessage());
+            broken = true;
+            return;
+        }
+        if (img == null) {
+            return;
+        }
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            tiles.put(tile, img);
+        }
+        SwingUtilities.invokeLater(() -> repaint(bounds));
+    }
+
+    /**
+     * Decodes the region of the image covered by the given display bounds.
+     */
+    private BufferedImage decode(final Rectangle bounds) throws IOException {
+        final int x0 = (int) (bounds.x / scale);
+        final int y0 = (int) (bounds.y / scale);
+        final int x1 = Math.min(imageWidth, (int) Math.ceil((bounds.x + bounds.width) / scale));
+        final int y1 = Math.min(imageHeight, (int) Math.ceil((bounds.y + bounds.height) / scale));
+        if (x1 <= x0 || y1 <= y0) {
+            return null;
+        }
+        synchronized (readerLock) {
+            if (disposed) {
+                return null;
+            }
+            if (reader == null) {
+                open();
+            }
+            final ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(0, param);
+        }
+    }
+
+    private void open() throws IOException {
+        iis = ChannelImageInputStream.open(file);
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageReader found for " + file);
+        }
+        reader = readers.next();
+        reader.setInput(iis, false, true);
+    }
+}
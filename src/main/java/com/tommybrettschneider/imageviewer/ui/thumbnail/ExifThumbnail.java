@@ -0,0 +1,153 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Extracts the JPEG thumbnail embedded in the EXIF (APP1) segment of a JPEG
+ * file. The JDK's JPEG reader only exposes JFIF/JFXX thumbnails, while cameras
+ * store theirs in IFD1 of the EXIF data.
+ *
+ * @author Tommy Brettschneider
+ */
+final class ExifThumbnail {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int TAG_JPEG_OFFSET = 0x0201;
+    private static final int TAG_JPEG_LENGTH = 0x0202;
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    private ExifThumbnail() {}
+
+    /**
+     * Reads the encoded EXIF thumbnail from the start of the given stream.
+     * The stream's position is restored afterwards.
+     * @param iis the stream of a JPEG file
+     * @return the bytes of the embedded JPEG thumbnail or <code>null</code> if
+     * there is none
+     * @throws IOException if the stream cannot be read
+     */
+    static byte[] read(final ImageInputStream iis) throws IOException {
+        final ByteOrder byteOrder = iis.getByteOrder();
+        iis.mark();
+        try {
+            iis.setByteOrder(ByteOrder.BIG_ENDIAN);
+            if (iis.read() != 0xFF || iis.read() != MARKER_SOI) {
+                return null;
+            }
+            while (true) {
+                if (iis.read() != 0xFF) {
+                    return null;
+                }
+                final int marker = iis.read();
+                if (marker < 0xE0 || marker > 0xEF) {
+                    return null; // EXIF data is stored in the APPn segments in front of the image
+                }
+                final int length = iis.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return null;
+                }
+                if (marker == MARKER_APP1 && length > EXIF_HEADER.length) {
+                    final byte[] segment = new byte[length];
+                    iis.readFully(segment);
+                    if (startsWith(segment, EXIF_HEADER)) {
+                        return extract(segment, EXIF_HEADER.length);
+                    }
+                } else {
+                    iis.skipBytes(length);
+                }
+            }
+        } finally {
+            iis.reset();
+            iis.setByteOrder(byteOrder);
+        }
+    }
+
+    /**
+     * Locates the thumbnail via the JPEGInterchangeFormat tags of IFD1.
+     */
+    private static byte[] extract(final byte[] segment, final int tiff) {
+        if (segment.length < tiff + 8) {
+            return null;
+        }
+        final boolean littleEndian;
+        if (segment[tiff] == 'I' && segment[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (segment[tiff] == 'M' && segment[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return null;
+        }
+        // offsets are relative to the TIFF header and checked before they are added to it
+        final int ifd0 = readInt(segment, tiff + 4, littleEndian);
+        if (!isWithin(segment, tiff, ifd0)) {
+            return null;
+        }
+        final int ifd0Entries = readShort(segment, tiff + ifd0, littleEndian);
+        if (ifd0Entries < 0) {
+            return null;
+        }
+        final int ifd1 = readInt(segment, tiff + ifd0 + 2 + ifd0Entries * 12, littleEndian);
+        if (ifd1 <= 0 || !isWithin(segment, tiff, ifd1)) {
+            return null;
+        }
+        final int ifd1Entries = readShort(segment, tiff + ifd1, littleEndian);
+        if (ifd1Entries < 0) {
+            return null;
+        }
+        int offset = -1;
+        int length = -1;
+        for (int i = 0; i < ifd1Entries; i++) {
+            final int entry = tiff + ifd1 + 2 + i * 12;
+            final int tag = readShort(segment, entry, littleEndian);
+            if (tag == TAG_JPEG_OFFSET) {
+                offset = readInt(segment, entry + 8, littleEndian);
+            } else if (tag == TAG_JPEG_LENGTH) {
+                length = readInt(segment, entry + 8, littleEndian);
+            }
+        }
+        if (offset <= 0 || length <= 0 || !isWithin(segment, tiff, offset) || length > segment.length - tiff - offset) {
+            return null;
+        }
+        final int start = tiff + offset;
+        return Arrays.copyOfRange(segment, start, start + length);
+    }
+
+    /**
+     * Checks that an offset relative to the TIFF header lies within the
+     * segment, without overflowing.
+     */
+    private static boolean isWithin(final byte[] segment, final int tiff, final int offset) {
+        return offset >= 0 && offset < segment.length - tiff;
+    }
+
+    private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readShort(final byte[] b, final int pos, final boolean littleEndian) {
+        if (pos < 0 || pos > b.length - 2) {
+            return -1;
+        }
+        return littleEndian
+                ? (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8
+                : (b[pos] & 0xFF) << 8 | (b[pos + 1] & 0xFF);
+    }
+
+    private static int readInt(final byte[] b, final int pos, final boolean littleEndian) {
+        if (pos < 0 || pos > b.length - 4) {
+            return -1;
+        }
+        return littleEndian
+                ? (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16 | (b[pos + 3] & 0xFF) << 24
+                : (b[pos] & 0xFF) << 24 | (b[pos + 1] & 0xFF) << 16 | (b[pos + 2] & 0xFF) << 8 | (b[pos + 3] & 0xFF);
+    }
+}
@@ -1,29 +1,30 @@
 package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
+import com.tommybrettschneider.imageviewer.base.ContainerFormats;
+import com.tommybrettschneider.imageviewer.util.ChannelImageInputStream;
+import java.awt.Component;
 import java.awt.Graphics2D;
 import java.awt.datatransfer.DataFlavor;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
-import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.filechooser.FileSystemView;
-import org.apache.commons.io.IOUtils;
 import sun.awt.shell.ShellFolder;
 
 public class FileThumbnail extends Thumbnail<File> {
 
     private static final Logger LOGGER = Logger.getLogger(FileThumbnail.class.getName());
 
-    public FileThumbnail(final File file, final ExecutorService threadPool) {
-        super(file, threadPool);
+    public FileThumbnail(final File file, final ThumbnailScheduler scheduler) {
+        super(file, scheduler);
     }
 
     @Override
@@ -39,13 +40,13 @@ public class FileThumbnail extends Thumbnail<File> {
     }
 
     @Override
-    public void paintProxyImage(Graphics2D g2d) {
+    public void paintProxyImage(Component c, Graphics2D g2d) {
         try {
             //final ShellFolder sf = ShellFolder.getShellFolder(getSource());
             //final ImageIcon icon = new ImageIcon(sf.getIcon(true));
             final Icon icon = FileSystemView.getFileSystemView().getSystemIcon(getSource());
-            icon.paintIcon(this, g2d, (getThumbnailWidth() - icon.getIconWidth()) / 2, (getThumbnailHeight() - icon.getIconHeight()) / 2);
-            //g2d.drawImage(icon.getImage(), (getThumbnailWidth() - icon.getIconWidth()) / 2, (getThumbnailHeight() - icon.getIconHeight()) / 2, this);
+            icon.paintIcon(c, g2d, (getThumbnailWidth() - icon.getIconWidth()) / 2, (getThumbnailHeight() - icon.getIconHeight()) / 2);
+            //g2d.drawImage(icon.getImage(), (getThumbnailWidth() - icon.getIconWidth()) / 2, (getThumbnailHeight() - icon.getIconHeight()) / 2, c);
         } catch (Exception e) {
             //TODO
         }
@@ -53,16 +54,37 @@ public class FileThumbnail extends Thumbnail<File> {
 
     @Override
     public ImageInputStream getImageInputStream() throws IOException {
-        return ImageIO.createImageInputStream(getSource());
+        return ChannelImageInputStream.open(getSource());
     }
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return IOUtils.toBufferedInputStream(new FileInputStream(getSource()));
+        return new BufferedInputStream(new FileInputStream(getSource()));
+    }
+
+    @Override
+    public boolean isContainer() {
+        return ContainerFormats.getInstance().isContainer(getSource());
     }
 
     @Override
     public long getFileSize() {
         return getSource().length();
     }
+
+    @Override
+    public long getLastModified() {
+        return getSource().lastModified();
+    }
+
+    @Override
+    public String getCacheKey() {
+        String path;
+        try {
+            path = getSource().getCanonicalPath();
+        } catch (IOException e) {
+            path = getSource().getAbsolutePath();
+        }
+        return path + '|' + getSource().lastModified() + '|' + getSource().length();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import java.awt.Dimension;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of the sizes of source images, keyed by
+ * {@link Thumbnail#getCacheKey()}, so revisiting a folder neither decodes
+ * nor probes its images again to show tooltips or sort by image size. The
+ * number of cached sizes is limited by the system property
+ * <code>imageviewer.imagesize.cache</code>.
+ *
+ * @author Tommy Brettschneider
+ */
+final class ImageSizeCache {
+
+    private static final String PROPERTY_SIZE = "imageviewer.imagesize.cache";
+
+    private static ImageSizeCache instance;
+
+    private final Map<String, Dimension> sizes;
+
+    static synchronized ImageSizeCache getInstance() {
+        if (instance == null) {
+            instance = new ImageSizeCache(Integer.getInteger(PROPERTY_SIZE, 16384));
+        }
+        return instance;
+    }
+
+    private ImageSizeCache(final int maxSize) {
+        this.sizes = new LinkedHashMap<String, Dimension>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Dimension> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized Dimension get(final String key) {
+        return sizes.get(key);
+    }
+
+    synchronized void put(final String key, final Dimension size) {
+        sizes.put(key, size);
+    }
+}
@@ -23,7 +23,6 @@
  */
 package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
-import java.awt.datatransfer.Transferable;
 import java.awt.dnd.DragGestureEvent;
 import java.awt.dnd.DragGestureListener;
 
@@ -33,14 +32,17 @@ import java.awt.dnd.DragGestureListener;
  */
 final class MyDragGestureListener implements DragGestureListener {
     
-    private final Transferable transferable;
+    private final ThumbnailPanel thumbnailPanel;
 
-    public MyDragGestureListener(Transferable proxy) {
-        this.transferable = proxy;
+    public MyDragGestureListener(ThumbnailPanel thumbnailPanel) {
+        this.thumbnailPanel = thumbnailPanel;
     }
 
     @Override
     public void dragGestureRecognized(DragGestureEvent e) {
-        e.startDrag(null, transferable);
+        final Thumbnail thumbnail = thumbnailPanel.getThumbnailAt(e.getDragOrigin());
+        if (thumbnail != null) {
+            e.startDrag(null, thumbnail);
+        }
     }
 }
\ No newline at end of file
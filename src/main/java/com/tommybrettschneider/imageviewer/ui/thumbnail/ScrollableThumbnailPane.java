@@ -1,8 +1,9 @@
 package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
+import com.tommybrettschneider.imageviewer.base.Archive;
 import com.tommybrettschneider.imageviewer.base.Directory;
+import com.tommybrettschneider.imageviewer.base.DirectoryWatcher;
 import com.tommybrettschneider.imageviewer.base.Walkable;
-import com.tommybrettschneider.imageviewer.base.ZipFile;
 import com.tommybrettschneider.imageviewer.sort.SortMenu;
 import com.tommybrettschneider.imageviewer.ui.preview.PreviewPane;
 import com.tommybrettschneider.imageviewer.util.UIUtils;
@@ -10,10 +11,10 @@ import java.awt.Color;
 import java.awt.Container;
 import java.awt.Desktop;
 import java.awt.Dimension;
-import java.awt.FlowLayout;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
@@ -24,16 +25,26 @@ import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
-import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import javax.swing.event.ListSelectionEvent;
 import org.apache.commons.io.FileUtils;
 
 public class ScrollableThumbnailPane extends JScrollPane {
@@ -42,10 +53,21 @@ public class ScrollableThumbnailPane extends JScrollPane {
     private static final Point UPPERLEFTCORNER = new Point(0, 0);
 
     public static final int THUMB_MARGIN = 10;
+    public static final int PREFETCH_AHEAD = 3;
+    public static final int PREFETCH_BEHIND = 1;
+    public static final int PREFETCH_ROWS = 2;
 
     private ThumbnailPanel thumbnailPanel;
     private PreviewPane previewpane;
     private ExecutorService executorService;
+    private ThumbnailScheduler scheduler;
+    private final ExecutorService listingService;
+    private Future<?> enumeration;
+    private int sourceGeneration;
+    private DirectoryWatcher.Registration watch;
+    // files of the watched directory shown or deleted since it is shown, on the EDT only
+    private final Set<File> shownFiles = new HashSet<>();
+    private final Set<File> deletedFiles = new HashSet<>();
     private Walkable walkable;
     private int thumbSize = 135;
     private final PropertyChangeSupport pcs;
@@ -59,16 +81,33 @@ public class ScrollableThumbnailPane extends JScrollPane {
         super();
         getViewport().setBackground(Color.WHITE);
         getViewport().setMinimumSize(new Dimension(getThumbSize() + THUMB_MARGIN + THUMB_MARGIN, getThumbSize() + THUMB_MARGIN + THUMB_MARGIN));
+        thumbnailPanel = new ThumbnailPanel(this);
         this.mouseListener = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent evt) {
+                if (SwingUtilities.isRightMouseButton(evt) && thumbnailPanel.getThumbnailAt(evt.getPoint()) == null) {
+                    final JPopupMenu sortPopupMenu = new JPopupMenu();
+                    final SortMenu sort = new SortMenu(ScrollableThumbnailPane.this);
+                    sort.setSortableContainer(thumbnailPanel);
+                    sortPopupMenu.add(sort);
+                    sortPopupMenu.show(thumbnailPanel, evt.getX(), evt.getY());
+                }
+            }
+
             @Override
             public void mouseClicked(MouseEvent evt) {
-                getPanel().requestFocusInWindow();                
-                final Thumbnail thumbnail = (Thumbnail)evt.getSource();                
+                getPanel().requestFocusInWindow();
+                final Thumbnail thumbnail = getPanel().getThumbnailAt(evt.getPoint());
+                if (thumbnail == null) {
+                    return;
+                }
                 if (UIUtils.isDoubleClick(evt)) {
                     if (thumbnail instanceof FileThumbnail) {
                         File f = ((FileThumbnail) thumbnail).getSource();
                         Walkable walkable = Walkable.getInstance(f);
                         setSource(walkable);
+                    } else if (thumbnail instanceof ZipEntryThumbnail && thumbnail.isContainer()) {
+                        openContainer((ZipEntryThumbnail) thumbnail);
                     }
                 } else if (SwingUtilities.isRightMouseButton(evt)) {
                     JPopupMenu popup = new JPopupMenu();                   
@@ -106,8 +145,7 @@ public class ScrollableThumbnailPane extends JScrollPane {
                     mi.addActionListener((ActionEvent arg0) -> {
                         final File selectedFile = ((FileThumbnail) thumbnail).getSource();
                         FileUtils.deleteQuietly(selectedFile);
-                        getPanel().remove(thumbnail);
-                        revalidate();
+                        getPanel().getModel().remove(thumbnail);
                     });
                     popup.add(mi);
                     mi = new JMenuItem("Refresh...");
@@ -115,7 +153,7 @@ public class ScrollableThumbnailPane extends JScrollPane {
                         refresh();
                     });
                     popup.add(mi);
-                    popup.show(thumbnail, evt.getX(), evt.getY());
+                    popup.show(thumbnailPanel, evt.getX(), evt.getY());
                 }        
                 try {                   
                     if (UIUtils.isDoubleClick(evt)) {
@@ -147,11 +185,6 @@ public class ScrollableThumbnailPane extends JScrollPane {
                             }
                         });
                     }                  
-                    if (thumbnail instanceof FileThumbnail) {
-                        previewpane.setSource(((FileThumbnail) thumbnail).getSource());
-                    } else if (thumbnail instanceof ZipEntryThumbnail) {
-                        previewpane.setSource(((ZipEntryThumbnail) thumbnail).getInputStream());
-                    }
                 } catch (Exception ex) {
                     LOGGER.warning(ex.getMessage());
                 }
@@ -161,47 +194,50 @@ public class ScrollableThumbnailPane extends JScrollPane {
         setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         setRequestFocusEnabled(true);
         setAutoscrolls(true);
-        thumbnailPanel = new ThumbnailPanel(this);
-        ThumbnailSelection selection = new ThumbnailSelection(thumbnailPanel);
-        getViewport().add(selection);
-        thumbnailPanel.setLayout(new FlowLayout(FlowLayout.LEFT, THUMB_MARGIN, THUMB_MARGIN));
-        selection.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(java.awt.event.MouseEvent evt) {
-                try {
-                    FileThumbnail at = (FileThumbnail) evt.getSource();
-                    setSource(Walkable.getInstance(at.getSource()));
-                } catch (Exception ex) {
-                    LOGGER.warning(ex.getMessage());                  
-                }
-                if (ScrollableThumbnailPane.this.isVisible()) {
-                    ScrollableThumbnailPane.this.requestFocusInWindow();
+        setViewportView(thumbnailPanel);
+        thumbnailPanel.addMouseListener(mouseListener);
+        thumbnailPanel.addListSelectionListener((ListSelectionEvent evt) -> {
+            if (!evt.getValueIsAdjusting()) {
+                final int lead = thumbnailPanel.getLeadSelectionIndex();
+                if (lead >= 0 && lead < thumbnailPanel.getModel().getSize() && thumbnailPanel.isSelectedIndex(lead)) {
+                    preview(thumbnailPanel.getModel().getElementAt(lead));
                 }
             }
+        });
+        thumbnailPanel.getModel().addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent evt) {
+                scheduleWindow();
+            }
 
             @Override
-            public void mousePressed(MouseEvent evt) {
-                if (SwingUtilities.isRightMouseButton(evt)) {
-                    final JPopupMenu sortPopupMenu = new JPopupMenu();
-                    final SortMenu sort = new SortMenu(ScrollableThumbnailPane.this);
-                    sort.setSortableContainer(thumbnailPanel);
-                    sortPopupMenu.add(sort);
-                    sortPopupMenu.show(thumbnailPanel, evt.getX(), evt.getY());
-                }
-            }                      
+            public void intervalRemoved(ListDataEvent evt) {
+                // pending requests refer to positions that are no longer valid
+                clearScheduler();
+                scheduleWindow();
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent evt) {
+                clearScheduler();
+                scheduleWindow();
+            }
         });
+        getViewport().addChangeListener((ChangeEvent evt) -> scheduleWindow());
         this.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent evt) {
                 if ((getThumbSize() + THUMB_MARGIN + THUMB_MARGIN + getVerticalScrollBar().getWidth()) > getWidth()) {
                     setThumbSize(getWidth() - THUMB_MARGIN - THUMB_MARGIN - getVerticalScrollBar().getWidth());
                 }
-                thumbnailPanel.invalidate();
-                thumbnailPanel.validate();
-                thumbnailPanel.repaint();
             }
         });
         pcs = new PropertyChangeSupport(this);
+        listingService = Executors.newSingleThreadExecutor(r -> {
+            final Thread t = new Thread(r, "thumbnail-listing");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     
@@ -211,9 +247,10 @@ public class ScrollableThumbnailPane extends JScrollPane {
 
     public final void setExecutorService(ExecutorService executorService) {
         this.executorService = executorService;
+        this.scheduler = new ThumbnailScheduler(executorService);
     }
     
-    public final JPanel getPanel() {
+    public final ThumbnailPanel getPanel() {
         return this.thumbnailPanel;
     }
 
@@ -227,24 +264,261 @@ public class ScrollableThumbnailPane extends JScrollPane {
 
     public final void setSource(Walkable walkable) {
         if (walkable!=null) {
+            final Walkable previous = this.walkable;
             this.walkable = walkable;
+            final int generation = ++sourceGeneration;
+            if (enumeration != null) {
+                enumeration.cancel(true);
+            }
+            if (previous instanceof Archive && previous != walkable) {
+                close((Archive) previous);
+            }
+            clearScheduler();
             getViewport().setViewPosition(UPPERLEFTCORNER);
-            getPanel().removeAll();
-            getPanel().revalidate();
-            getPanel().repaint();
-            
-            if (walkable instanceof ZipFile) {
-                walkable.getChildren().forEach(zipEntry -> {
-                    Thumbnail t = new ZipEntryThumbnail((ZipEntry)zipEntry, executorService, (java.util.zip.ZipFile)walkable.getSource());
-                    t.addMouseListener(mouseListener);                 
-                    getPanel().add(t);
+            getPanel().clearSelection();
+            getPanel().getModel().clear();
+            shownFiles.clear();
+            deletedFiles.clear();
+            watch(walkable, generation);
+
+            enumeration = walkable.walk(listingService, batch -> {
+                final List<Thumbnail> thumbnails = createThumbnails(walkable, (List<?>) batch);
+                SwingUtilities.invokeLater(() -> {
+                    // batches of a previous source may still be queued
+                    if (generation == sourceGeneration) {
+                        addThumbnails(thumbnails);
+                    }
                 });
-            } else if (walkable instanceof Directory) {
-                walkable.getChildren().forEach(file -> {
-                    Thumbnail t = new FileThumbnail((File)file, executorService);
-                    t.addMouseListener(mouseListener);
-                    getPanel().add(t);
+            });
+        }
+    }
+
+    /**
+     * Watches the directory shown, so created, deleted and modified images
+     * are added, removed and rendered again without listing the directory
+     * again. Archives are not watched.
+     */
+    private void watch(final Walkable walkable, final int generation) {
+        if (watch != null) {
+            watch.close();
+            watch = null;
+        }
+        if (!(walkable instanceof Directory)) {
+            return;
+        }
+        final Directory directory = (Directory) walkable;
+        try {
+            watch = DirectoryWatcher.getInstance().watch(directory.getSource().toPath(), change -> {
+                // the filter checks the files, so do it on the watcher's thread
+                final List<File> created = new ArrayList<>();
+                change.getCreated().forEach(path -> {
+                    if (directory.getFilter().test(path.toFile())) {
+                        created.add(path.toFile());
+                    }
                 });
+                SwingUtilities.invokeLater(() -> {
+                    if (generation == sourceGeneration) {
+                        directoryChanged(change, created);
+                    }
+                });
+            });
+        } catch (IOException ex) {
+            LOGGER.warning(ex.getMessage());
+        }
+    }
+
+    /**
+     * Adds thumbnails to the grid. Since the directory shown is watched
+     * while it is still being listed, a file may be reported both as created
+     * and by the listing, or be listed after it has been deleted; such files
+     * are skipped. With an active sort key the <code>SortEngine</code> sorts
+     * the added thumbnails in.
+     */
+    private void addThumbnails(final List<Thumbnail> thumbnails) {
+        final List<Thumbnail> added = new ArrayList<>(thumbnails.size());
+        for (Thumbnail thumbnail : thumbnails) {
+            if (!(thumbnail instanceof FileThumbnail)) {
+                added.add(thumbnail);
+                continue;
+            }
+            final File file = ((FileThumbnail) thumbnail).getSource();
+            if (!deletedFiles.contains(file) && shownFiles.add(file)) {
+                added.add(thumbnail);
+            }
+        }
+        getPanel().getModel().addAll(added);
+    }
+
+    /**
+     * Applies the changes of the directory shown to the thumbnails.
+     * @param created the created files accepted by the directory's filter
+     */
+    private void directoryChanged(final DirectoryWatcher.Change change, final List<File> created) {
+        if (change.isGone()) {
+            // deleted along with its files
+            if (enumeration != null) {
+                enumeration.cancel(true);
+            }
+            clearScheduler();
+            getPanel().clearSelection();
+            getPanel().getModel().clear();
+            shownFiles.clear();
+            deletedFiles.clear();
+            if (watch != null) {
+                watch.close();
+                watch = null;
+            }
+            return;
+        }
+        if (change.isOverflow()) {
+            refresh();
+            return;
+        }
+        final Set<File> deleted = new HashSet<>();
+        change.getDeleted().forEach(path -> deleted.add(path.toFile()));
+        final Set<File> modified = new HashSet<>();
+        change.getModified().forEach(path -> modified.add(path.toFile()));
+        // replaced files are reported as created if they were deleted before
+        modified.addAll(created);
+        deletedFiles.addAll(deleted);
+        deletedFiles.removeAll(created);
+        shownFiles.removeAll(deleted);
+
+        final ThumbnailListModel model = getPanel().getModel();
+        final List<Thumbnail> removed = new ArrayList<>();
+        for (Thumbnail thumbnail : model.getThumbnails()) {
+            final File file = ((FileThumbnail) thumbnail).getSource();
+            if (deleted.contains(file)) {
+                removed.add(thumbnail);
+            } else if (modified.contains(file)) {
+                // rendered again by scheduleWindow() if visible
+                thumbnail.invalidate();
+            }
+        }
+        model.removeAll(removed);
+        addThumbnails(createThumbnails(getSource(), created));
+        scheduleWindow();
+    }
+
+    private List<Thumbnail> createThumbnails(final Walkable walkable, final List<?> children) {
+        final List<Thumbnail> thumbnails = new ArrayList<>(children.size());
+        if (walkable instanceof Archive) {
+            final Archive archive = (Archive) walkable;
+            children.forEach(zipEntry -> {
+                thumbnails.add(new ZipEntryThumbnail((ZipEntry)zipEntry, scheduler, archive));
+            });
+        } else if (walkable instanceof Directory) {
+            children.forEach(file -> {
+                thumbnails.add(new FileThumbnail((File)file, scheduler));
+            });
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Closes an archive no longer shown, once its enumeration has ended, so
+     * the archive file is released.
+     */
+    private void close(final Archive archive) {
+        listingService.execute(() -> {
+            try {
+                archive.close();
+            } catch (IOException ex) {
+                LOGGER.warning(ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Shows the entries of a container nested in the current archive. The
+     * container is extracted in the background if needed.
+     */
+    private void openContainer(final ZipEntryThumbnail thumbnail) {
+        listingService.execute(() -> {
+            try {
+                final Archive container = thumbnail.openContainer();
+                SwingUtilities.invokeLater(() -> setSource(container));
+            } catch (IOException ex) {
+                LOGGER.warning(ex.getMessage());
+            }
+        });
+    }
+
+    private void clearScheduler() {
+        if (scheduler != null) {
+            scheduler.clear();
+        }
+    }
+
+    /**
+     * Tells the scheduler which thumbnails are visible and requests the ones
+     * within a few rows around them, so they are ready when scrolled into view.
+     */
+    private void scheduleWindow() {
+        final int size = thumbnailPanel.getModel().getSize();
+        if (scheduler == null || size == 0) {
+            return;
+        }
+        final Rectangle visible = thumbnailPanel.getVisibleRect();
+        final int firstVisible = Math.max(0, thumbnailPanel.locationToIndex(visible.getLocation()));
+        final int lastVisible = Math.max(firstVisible, thumbnailPanel.locationToIndex(new Point(visible.x + visible.width - 1, visible.y + visible.height - 1)));
+        final int columns = Math.max(1, visible.width / thumbnailPanel.getFixedCellWidth());
+        final int firstInWindow = Math.max(0, firstVisible - PREFETCH_ROWS * columns);
+        final int lastInWindow = Math.min(size - 1, lastVisible + PREFETCH_ROWS * columns);
+        scheduler.setWindow(firstVisible, lastVisible, firstInWindow, lastInWindow);
+        for (int i = firstInWindow; i <= lastInWindow; i++) {
+            final Thumbnail thumbnail = thumbnailPanel.getModel().getElementAt(i);
+            if (!thumbnail.isLoaded()) {
+                thumbnail.load(thumbnailPanel, i);
+            }
+        }
+    }
+
+    /**
+     * Shows the given thumbnail's image in the preview pane.
+     */
+    private void preview(final Thumbnail thumbnail) {
+        if (thumbnail.isContainer()) {
+            return;
+        }
+        try {
+            if (thumbnail instanceof FileThumbnail) {
+                // the thumbnail stands in for the image until it has been decoded
+                previewpane.setSource(((FileThumbnail) thumbnail).getSource().toURI(), thumbnail.getThumbnailImage());
+            } else if (thumbnail instanceof ZipEntryThumbnail) {
+                // reading an entry may decompress the archive first, so not on the EDT
+                previewpane.setSource(((ZipEntryThumbnail) thumbnail)::getImageInputStream, thumbnail.getThumbnailImage());
+            }
+            prefetchNeighbours(thumbnail);
+        } catch (Exception ex) {
+            LOGGER.warning(ex.getMessage());
+        }
+    }
+
+    /**
+     * Lets the preview pane prefetch the images next to the given thumbnail
+     * in the current order of the thumbnail panel.
+     */
+    private void prefetchNeighbours(final Thumbnail thumbnail) {
+        final List<Thumbnail> thumbnails = getPanel().getModel().getThumbnails();
+        final int index = thumbnails.indexOf(thumbnail);
+        final List<URI> uris = new ArrayList<>();
+        for (int i = 1; index >= 0 && i <= Math.max(PREFETCH_AHEAD, PREFETCH_BEHIND); i++) {
+            if (i <= PREFETCH_AHEAD) {
+                addPrefetchCandidate(uris, thumbnails, index + i);
+            }
+            if (i <= PREFETCH_BEHIND) {
+                addPrefetchCandidate(uris, thumbnails, index - i);
+            }
+        }
+        previewpane.prefetch(uris);
+    }
+
+    private static void addPrefetchCandidate(final List<URI> uris, final List<Thumbnail> thumbnails, final int index) {
+        if (index >= 0 && index < thumbnails.size() && thumbnails.get(index) instanceof FileThumbnail) {
+            final File file = ((FileThumbnail) thumbnails.get(index)).getSource();
+            if (file.isFile()) {
+                uris.add(file.toURI());
             }
         }
     }
@@ -260,6 +534,9 @@ public class ScrollableThumbnailPane extends JScrollPane {
     public final void setThumbSize(int thumbSize) {
         this.thumbSize = thumbSize;
         Thumbnail.getDimension().setSize(thumbSize, thumbSize);
+        if (thumbnailPanel != null) {
+            thumbnailPanel.updateCellSize();
+        }
         refresh();
     }
 }
\ No newline at end of file
@@ -1,73 +1,51 @@
 package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
-import com.tommybrettschneider.imageviewer.ui.ApplicationWindow;
 import com.tommybrettschneider.imageviewer.util.UIUtils;
-import java.awt.AlphaComposite;
 import java.awt.Color;
-import java.awt.Composite;
+import java.awt.Component;
 import java.awt.Dimension;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsEnvironment;
 import java.awt.Image;
-import java.awt.RenderingHints;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
-import java.awt.dnd.DnDConstants;
-import java.awt.dnd.DragGestureRecognizer;
-import java.awt.dnd.DragSource;
-import java.awt.dnd.DragSourceListener;
-import java.awt.dnd.DragSourceMotionListener;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 import javax.imageio.stream.ImageInputStream;
-import javax.swing.JPanel;
-import javax.swing.ToolTipManager;
 import net.coobird.thumbnailator.Thumbnails;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 /**
+ * Lightweight model of a single entry of the thumbnail grid. Thumbnails are
+ * painted by the <code>ThumbnailRenderer</code> of the <code>ThumbnailPanel</code>,
+ * they are not Swing components themselves.
  *
  * @author Tommy Brettschneider
  */
-public abstract class Thumbnail<E> extends JPanel implements Runnable, Transferable {
+public abstract class Thumbnail<E> implements Runnable, Transferable {
 
     private static final Logger LOGGER = Logger.getLogger(Thumbnail.class.getName());
-
-    private static final Color COLOR_SELECTED_THUMBNAIL = Color.decode("#B2DFEE");
     
     public final static GraphicsConfiguration graphicsConfiguration = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
-    protected final static Composite ALPHACOMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
     protected static final Color BORDER_COLOR = new Color(236, 233, 216);
     protected static Dimension dimension = new Dimension(135, 135);
-    protected int imageWidth, imageHeight;
+    protected volatile int imageWidth, imageHeight;
     protected float imageRatio;
-    protected BufferedImage thumbnailImage;
-    protected ExecutorService threadpool;
-    protected boolean selected;
-    private boolean executed;
+    protected volatile BufferedImage thumbnailImage;
+    protected ThumbnailScheduler scheduler;
+    private transient volatile Component view;
+    private volatile boolean loaded;
+    private volatile boolean sourceSizeProbed;
     private E source;
     
     
-    public Thumbnail(final E source, final ExecutorService threadPool) {
+    public Thumbnail(final E source, final ThumbnailScheduler scheduler) {
         this.source = source;
-        this.threadpool = threadPool;
-        setOpaque(false);
-        setBackground(Color.WHITE);
-        ToolTipManager.sharedInstance().registerComponent(this);
-//                
-        //TODO: try to move this one to ThumbnailPane... 
-        MyDragGestureListener mdgl = new MyDragGestureListener(this);
-        DragSource dragSource = new DragSource();
-        DragGestureRecognizer dgr = dragSource.createDefaultDragGestureRecognizer(
-                this, DnDConstants.ACTION_COPY, mdgl);
-        dragSource.addDragSourceMotionListener((DragSourceMotionListener) ApplicationWindow.GLASSPANE);
-        dragSource.addDragSourceListener((DragSourceListener) ApplicationWindow.GLASSPANE);
+        this.scheduler = scheduler;
     }
     
     /**
@@ -97,50 +75,45 @@ public abstract class Thumbnail<E> extends JPanel implements Runnable, Transfera
         return getThumbnailWidth() * getThumbnailHeight() * 32;
     }
 
-    @Override
-    protected final void paintComponent(final Graphics g) {
-        if (!executed) {
-            threadpool.execute(this);     
-            executed = true;
+    /**
+     * Requests the thumbnail image to be loaded in the background unless this
+     * already happened.
+     * @param view the component to repaint once the image is available
+     * @param index the thumbnail's position within the view, used to prioritise the request
+     */
+    public final void load(final Component view, final int index) {
+        this.view = view;
+        if (!loaded) {
+            scheduler.schedule(this, index);
         }
+    }
 
-        super.paintComponent(g);
-
-        final Graphics2D g2d = (Graphics2D) g;
-        g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
-        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
-        g2d.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
-        g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-
-        if (thumbnailImage != null) {
-            g2d.drawImage(thumbnailImage, (getThumbnailWidth() - thumbnailImage.getWidth()) / 2, (getThumbnailHeight() - thumbnailImage.getHeight()) / 2, this);
-        } else {
-            paintProxyImage(g2d);
-        }
-        g2d.setColor(BORDER_COLOR);
-        g2d.drawRect(0, 0, getThumbnailWidth()-1, getThumbnailHeight()-1); 
-                
-        if (isSelected()) {
-            g2d.setColor(COLOR_SELECTED_THUMBNAIL);
-            g2d.setComposite(ALPHACOMPOSITE);
-            g2d.fillRect(0, 0, getThumbnailWidth()-1, getThumbnailHeight()-1);
-        }
-        g2d.dispose();
+    /**
+     * Marks the thumbnail's source as changed. The thumbnail image is loaded
+     * again when next requested and the source size probed again; until then
+     * the current image is shown.
+     */
+    public final void invalidate() {
+        sourceSizeProbed = false;
+        imageWidth = 0;
+        imageHeight = 0;
+        loaded = false;
     }
 
-    @Override
-    public final Dimension getPreferredSize() {
-        return getDimension();
+    /**
+     * Checks whether loading the thumbnail image has been finished, successfully or not.
+     * @return <code>true</code> if the thumbnail does not need to be loaded anymore
+     */
+    public final boolean isLoaded() {
+        return this.loaded;
     }
 
     /**
      * Custom painting code to draw a transferable image during imageloading comes in here.
+     * @param c the component the thumbnail is painted on
      * @param g the <code>Graphics2D</code> instance to draw onto
      */
-    public abstract void paintProxyImage(final Graphics2D g);
+    public abstract void paintProxyImage(final Component c, final Graphics2D g);
 
     /**
      * Custom imageloading code comes in here.
@@ -152,16 +125,58 @@ public abstract class Thumbnail<E> extends JPanel implements Runnable, Transfera
     public abstract InputStream getInputStream() throws IOException;
     
     public abstract long getFileSize();
+
+    /**
+     * @return the modification time of the thumbnail's source in milliseconds
+     */
+    public abstract long getLastModified();
+
+    /**
+     * Checks if the thumbnail's source is a container, e.g. an archive, whose
+     * entries are shown when it is opened rather than an image.
+     * @return <code>true</code> if the source is a container
+     */
+    public boolean isContainer() {
+        return false;
+    }
+
+    /**
+     * Gets the key identifying this thumbnail's source in the <code>ThumbnailStore</code>.
+     * The key has to change whenever the source image changes.
+     * @return the cache key of the thumbnail's source
+     */
+    public abstract String getCacheKey();
         
     @Override
     public void run() {
+        final int size = getThumbnailWidth();
+        final ThumbnailStore store = ThumbnailStore.getInstance();
         try {
-            thumbnailImage = Thumbnails.of(getInputStream()).size(getThumbnailWidth(), getThumbnailWidth()).asBufferedImage();;
-            imageWidth = thumbnailImage.getWidth(this); //otherwise sorting will not work
-            imageHeight = thumbnailImage.getHeight(this);
+            if (isContainer()) {
+                // containers are shown by their proxy image
+                return;
+            }
+            final String cacheKey = getCacheKey();
+            // a previous image stays visible until the new one is available
+            BufferedImage image = store.get(cacheKey, size);
+            if (image == null) {
+                final Dimension sourceSize = new Dimension();
+                try (ImageInputStream iis = getImageInputStream()) {
+                    image = Thumbnails.of(ThumbnailDecoder.read(iis, size, size, sourceSize)).size(size, size).asBufferedImage();
+                }
+                store.put(cacheKey, size, image);
+                ImageSizeCache.getInstance().put(cacheKey, sourceSize);
+                setSourceSize(sourceSize);
+            } else {
+                // a header probe at most, so sorting by image size need not do it
+                getSourceSize();
+            }
+            thumbnailImage = image;
             repaint();
         } catch (Exception ex) {
             LOGGER.warning(ex.getMessage());
+        } finally {
+            loaded = true;
         }
     }
 
@@ -174,7 +189,44 @@ public abstract class Thumbnail<E> extends JPanel implements Runnable, Transfera
     }
 
     /**
-     * Gets the sourceimage's width.
+     * Gets the size of the source image. It is known once the thumbnail has
+     * been loaded, otherwise it is read from the image's header, without
+     * decoding the image, and kept for the thumbnail's source.
+     * @return the size of the source image or <code>null</code> if it cannot be read
+     */
+    public final Dimension getSourceSize() {
+        if (!sourceSizeProbed) {
+            Dimension size = null;
+            if (!isContainer()) {
+                final String cacheKey = getCacheKey();
+                size = ImageSizeCache.getInstance().get(cacheKey);
+                if (size == null) {
+                    try (ImageInputStream iis = getImageInputStream()) {
+                        size = UIUtils.getImageSize(iis);
+                    } catch (IOException e) {
+                        LOGGER.fine(e.getMessage());
+                    }
+                    if (size != null) {
+                        ImageSizeCache.getInstance().put(cacheKey, size);
+                    }
+                }
+            }
+            setSourceSize(size);
+        }
+        return imageWidth > 0 ? new Dimension(imageWidth, imageHeight) : null;
+    }
+
+    private void setSourceSize(final Dimension size) {
+        if (size != null) {
+            imageWidth = size.width;
+            imageHeight = size.height;
+        }
+        sourceSizeProbed = true;
+    }
+
+    /**
+     * Gets the sourceimage's width, <code>0</code> unless it is known already,
+     * see {@link #getSourceSize()}.
      * @return the width of the sourceimage
      */
     public final int getImageWidth() {
@@ -182,7 +234,8 @@ public abstract class Thumbnail<E> extends JPanel implements Runnable, Transfera
     }
 
     /**
-     * Gets the sourceimage's height.
+     * Gets the sourceimage's height, <code>0</code> unless it is known already,
+     * see {@link #getSourceSize()}.
      * @return the height of the sourceimage
      */
     public final int getImageHeight() {
@@ -223,22 +276,18 @@ public abstract class Thumbnail<E> extends JPanel implements Runnable, Transfera
         return flavor.equals(DataFlavor.javaFileListFlavor);
     }
 
-    public void setSelected(boolean selected) {
-        this.selected = selected;
-    }
-
-    public boolean isSelected() {
-        return this.selected;
+    /**
+     * Repaints the component this thumbnail is shown in.
+     */
+    protected void repaint() {
+        final Component c = this.view;
+        if (c != null) {
+            c.repaint();
+        }
     }
 
-    @Override
     public String getToolTipText() {
-        Dimension imageSize = null;
-        try {
-            imageSize = UIUtils.getImageSize(getImageInputStream());
-        } catch (IOException e) {
-            
-        }
+        final Dimension imageSize = getSourceSize();
         final StringBuilder sb = new StringBuilder();
         sb.append("<HTML>");
         sb.append(getSourceFilename());
@@ -0,0 +1,176 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes images just detailed enough to render thumbnails from them.
+ *
+ * Thumbnails embedded in the image (JFIF/JFXX or EXIF) are used whenever they
+ * are large enough for the requested size. Otherwise the image's dimensions
+ * are read from its header and the image is decoded with source subsampling,
+ * so that only about twice the resolution of the thumbnail is materialised.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class ThumbnailDecoder {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailDecoder.class.getName());
+
+    /**
+     * Factor by which the decoded image is kept larger than the thumbnail, so
+     * the final resize still has enough detail to produce a smooth result.
+     */
+    private static final int OVERSAMPLING = 2;
+
+    /**
+     * Maximum deviation of an embedded thumbnail's aspect ratio from the one of
+     * the image, beyond which the thumbnail is considered to be letterboxed.
+     */
+    private static final double ASPECT_RATIO_TOLERANCE = 0.05;
+
+    private ThumbnailDecoder() {}
+
+    /**
+     * Decodes the first image of the given stream for a thumbnail that has to
+     * fit into <code>width</code> x <code>height</code> pixels.
+     * @param iis the stream to read the image from
+     * @param width the width of the thumbnail
+     * @param height the height of the thumbnail
+     * @return the subsampled image, still to be resized to the thumbnail's size
+     * @throws IOException if the image cannot be read
+     */
+    public static BufferedImage read(final ImageInputStream iis, final int width, final int height) throws IOException {
+        return read(iis, width, height, null);
+    }
+
+    /**
+     * Decodes the first image of the given stream for a thumbnail that has to
+     * fit into <code>width</code> x <code>height</code> pixels and reports the
+     * size of the full image.
+     * @param iis the stream to read the image from
+     * @param width the width of the thumbnail
+     * @param height the height of the thumbnail
+     * @param sourceSize receives the size of the full image, may be <code>null</code>
+     * @return the subsampled image, still to be resized to the thumbnail's size
+     * @throws IOException if the image cannot be read
+     */
+    public static BufferedImage read(final ImageInputStream iis, final int width, final int height, final Dimension sourceSize) throws IOException {
+        if (iis == null) {
+            throw new IOException("Unable to create an ImageInputStream");
+        }
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("No ImageReader found for the given image");
+        }
+        final ImageReader reader = readers.next();
+        try {
+            final byte[] exifThumbnail = "JPEG".equalsIgnoreCase(reader.getFormatName()) ? ExifThumbnail.read(iis) : null;
+            reader.setInput(iis, true, true);
+            final int sourceWidth = reader.getWidth(0);
+            final int sourceHeight = reader.getHeight(0);
+            if (sourceSize != null) {
+                sourceSize.setSize(sourceWidth, sourceHeight);
+            }
+            final BufferedImage embedded = readEmbeddedThumbnail(reader, exifThumbnail, sourceWidth, sourceHeight, width, height);
+            if (embedded != null) {
+                return embedded;
+            }
+            final ImageReadParam param = reader.getDefaultReadParam();
+            final int subsampling = getSubsampling(sourceWidth, sourceHeight, width, height);
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Reads the largest thumbnail embedded in the image, provided it is large
+     * enough for the requested size and shows the whole image.
+     */
+    private static BufferedImage readEmbeddedThumbnail(final ImageReader reader, final byte[] exifThumbnail,
+            final int sourceWidth, final int sourceHeight, final int width, final int height) throws IOException {
+        if (reader.readerSupportsThumbnails()) {
+            try {
+                final BufferedImage img = readLargestThumbnail(reader, sourceWidth, sourceHeight, width, height);
+                if (img != null) {
+                    return img;
+                }
+            } catch (IIOException e) {
+                // unusual headers must not prevent decoding the image itself
+                LOGGER.fine(e.getMessage());
+            }
+        }
+        if (exifThumbnail != null) {
+            try {
+                final BufferedImage img = ImageIO.read(new ByteArrayInputStream(exifThumbnail));
+                if (img != null && isUsable(img.getWidth(), img.getHeight(), sourceWidth, sourceHeight, width, height)) {
+                    return img;
+                }
+            } catch (IIOException e) {
+                // a corrupt embedded thumbnail falls back to decoding the image
+                LOGGER.fine(e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static BufferedImage readLargestThumbnail(final ImageReader reader,
+            final int sourceWidth, final int sourceHeight, final int width, final int height) throws IOException {
+        int best = -1;
+        long bestPixels = 0;
+        for (int i = 0; i < reader.getNumThumbnails(0); i++) {
+            final int w = reader.getThumbnailWidth(0, i);
+            final int h = reader.getThumbnailHeight(0, i);
+            if ((long) w * h > bestPixels && isUsable(w, h, sourceWidth, sourceHeight, width, height)) {
+                best = i;
+                bestPixels = (long) w * h;
+            }
+        }
+        return best >= 0 ? reader.readThumbnail(0, best) : null;
+    }
+
+    /**
+     * Checks that an embedded thumbnail does not need to be enlarged to fill the
+     * target box and has the aspect ratio of the image it belongs to.
+     */
+    private static boolean isUsable(final int thumbWidth, final int thumbHeight,
+            final int sourceWidth, final int sourceHeight, final int width, final int height) {
+        if (thumbWidth <= 0 || thumbHeight <= 0 || sourceWidth <= 0 || sourceHeight <= 0) {
+            return false;
+        }
+        final double thumbRatio = (double) thumbWidth / thumbHeight;
+        final double sourceRatio = (double) sourceWidth / sourceHeight;
+        return (thumbWidth >= width || thumbHeight >= height)
+                && Math.abs(thumbRatio - sourceRatio) <= sourceRatio * ASPECT_RATIO_TOLERANCE;
+    }
+
+    /**
+     * Gets the subsampling period for decoding an image of the given source
+     * size that is to be fitted into a box of the given target size.
+     * @param sourceWidth the width of the source image
+     * @param sourceHeight the height of the source image
+     * @param width the width of the target box
+     * @param height the height of the target box
+     * @return the subsampling period, 1 if the image must be decoded in full
+     */
+    public static int getSubsampling(final int sourceWidth, final int sourceHeight, final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            return 1;
+        }
+        final double scale = Math.max((double) sourceWidth / width, (double) sourceHeight / height);
+        return Math.max(1, (int) (scale / OVERSAMPLING));
+    }
+}
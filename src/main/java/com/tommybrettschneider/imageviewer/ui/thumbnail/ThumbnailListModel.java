@@ -0,0 +1,99 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.swing.AbstractListModel;
+
+/**
+ * List model of the thumbnail grid. All modifications fire a single event, so
+ * adding or reordering thousands of thumbnails costs one layout pass.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ThumbnailListModel extends AbstractListModel<Thumbnail> {
+
+    private final List<Thumbnail> thumbnails = new ArrayList<>();
+
+    @Override
+    public int getSize() {
+        return thumbnails.size();
+    }
+
+    @Override
+    public Thumbnail getElementAt(int index) {
+        return thumbnails.get(index);
+    }
+
+    public int indexOf(final Thumbnail thumbnail) {
+        return thumbnails.indexOf(thumbnail);
+    }
+
+    /**
+     * Gets an unmodifiable view of the thumbnails in their current order.
+     * @return the thumbnails of this model
+     */
+    public List<Thumbnail> getThumbnails() {
+        return Collections.unmodifiableList(thumbnails);
+    }
+
+    public void addAll(final Collection<? extends Thumbnail> added) {
+        if (!added.isEmpty()) {
+            final int first = thumbnails.size();
+            thumbnails.addAll(added);
+            fireIntervalAdded(this, first, thumbnails.size() - 1);
+        }
+    }
+
+    public void remove(final Thumbnail thumbnail) {
+        final int index = thumbnails.indexOf(thumbnail);
+        if (index >= 0) {
+            thumbnails.remove(index);
+            fireIntervalRemoved(this, index, index);
+        }
+    }
+
+    /**
+     * Removes the given thumbnails, firing one event per contiguous range of
+     * removed thumbnails.
+     * @param removed the thumbnails to remove
+     */
+    public void removeAll(final Collection<? extends Thumbnail> removed) {
+        final Set<Thumbnail> remove = Collections.newSetFromMap(new IdentityHashMap<>());
+        remove.addAll(removed);
+        int last = -1;
+        for (int i = thumbnails.size() - 1; i >= -1; i--) {
+            final boolean removable = i >= 0 && remove.contains(thumbnails.get(i));
+            if (removable && last < 0) {
+                last = i;
+            } else if (!removable && last >= 0) {
+                thumbnails.subList(i + 1, last + 1).clear();
+                fireIntervalRemoved(this, i + 1, last);
+                last = -1;
+            }
+        }
+    }
+
+    public void clear() {
+        if (!thumbnails.isEmpty()) {
+            final int last = thumbnails.size() - 1;
+            thumbnails.clear();
+            fireIntervalRemoved(this, 0, last);
+        }
+    }
+
+    /**
+     * Replaces the order of the thumbnails by the given one.
+     * @param ordered the same thumbnails in their new order
+     */
+    public void setOrder(final List<? extends Thumbnail> ordered) {
+        thumbnails.clear();
+        thumbnails.addAll(ordered);
+        if (!thumbnails.isEmpty()) {
+            fireContentsChanged(this, 0, thumbnails.size() - 1);
+        }
+    }
+}
@@ -2,55 +2,155 @@ package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
 import static com.tommybrettschneider.imageviewer.ui.thumbnail.ScrollableThumbnailPane.THUMB_MARGIN;
 
+import com.tommybrettschneider.imageviewer.ui.ApplicationWindow;
 import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.FlowLayout;
-import javax.swing.JPanel;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.dnd.DnDConstants;
+import java.awt.dnd.DragSource;
+import java.awt.dnd.DragSourceListener;
+import java.awt.dnd.DragSourceMotionListener;
+import java.awt.event.MouseEvent;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.swing.BorderFactory;
+import javax.swing.JList;
+import javax.swing.ListSelectionModel;
 
 /**
+ * Virtualized grid of thumbnails. Only the cells within the visible area are
+ * painted, all of them by the same <code>ThumbnailRenderer</code>, so the number
+ * of Swing components does not grow with the number of files shown.
  *
  * @author Tommy Brettschneider <tommy.brettschneider@gmail.com>
  */
-public class ThumbnailPanel extends JPanel {
+public class ThumbnailPanel extends JList<Thumbnail> {
 
     private final ScrollableThumbnailPane stp;
+    private final ThumbnailSelection selection;
 
     public ThumbnailPanel(ScrollableThumbnailPane stp) {
+        super(new ThumbnailListModel());
         this.stp = stp;
-        setBorder(null);
+        this.selection = new ThumbnailSelection(this);
+        setBorder(BorderFactory.createEmptyBorder(THUMB_MARGIN / 2, THUMB_MARGIN / 2, THUMB_MARGIN / 2, THUMB_MARGIN / 2));
         setBackground(Color.WHITE);
+        setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        setVisibleRowCount(-1);
+        setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        setCellRenderer(new ThumbnailRenderer());
+        updateCellSize();
+
+        final DragSource dragSource = new DragSource();
+        dragSource.createDefaultDragGestureRecognizer(this, DnDConstants.ACTION_COPY, new MyDragGestureListener(this));
+        dragSource.addDragSourceMotionListener((DragSourceMotionListener) ApplicationWindow.GLASSPANE);
+        dragSource.addDragSourceListener((DragSourceListener) ApplicationWindow.GLASSPANE);
+    }
+
+    @Override
+    public ThumbnailListModel getModel() {
+        return (ThumbnailListModel) super.getModel();
+    }
+
+    /**
+     * Replaces the order of the thumbnails, keeping the selected thumbnails
+     * selected at their new positions.
+     * @param ordered the same thumbnails in their new order
+     */
+    public void setOrder(final List<? extends Thumbnail> ordered) {
+        final Set<Thumbnail> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        selected.addAll(getSelectedValuesList());
+        final int leadIndex = getLeadSelectionIndex();
+        final Thumbnail lead = leadIndex >= 0 && leadIndex < getModel().getSize() ? getModel().getElementAt(leadIndex) : null;
+        getModel().setOrder(ordered);
+        if (selected.isEmpty()) {
+            return;
+        }
+        final ListSelectionModel selectionModel = getSelectionModel();
+        selectionModel.setValueIsAdjusting(true);
+        selectionModel.clearSelection();
+        int first = -1;
+        for (int i = 0; i <= ordered.size(); i++) {
+            final boolean isSelected = i < ordered.size() && selected.contains(ordered.get(i));
+            if (isSelected && first < 0) {
+                first = i;
+            } else if (!isSelected && first >= 0) {
+                selectionModel.addSelectionInterval(first, i - 1);
+                first = -1;
+            }
+        }
+        final int newLead = lead != null && selected.contains(lead) ? ordered.indexOf(lead) : -1;
+        if (newLead >= 0) {
+            // adding the lead again makes it the lead and anchor
+            selectionModel.addSelectionInterval(newLead, newLead);
+        }
+        selectionModel.setValueIsAdjusting(false);
     }
 
     public int getThumbSize() {
         return this.stp.getThumbSize();
     }
 
+    /**
+     * Adapts the size of the grid's cells to the current thumbnail size.
+     */
+    public final void updateCellSize() {
+        setFixedCellWidth(getThumbSize() + THUMB_MARGIN);
+        setFixedCellHeight(getThumbSize() + THUMB_MARGIN);
+    }
+
+    /**
+     * Gets the bounds of the thumbnail at the given index, excluding the margin
+     * around it.
+     * @param index the index of the thumbnail
+     * @return the thumbnail's bounds or <code>null</code> if the index is invalid
+     */
+    public Rectangle getThumbnailBounds(final int index) {
+        final Rectangle cell = getCellBounds(index, index);
+        if (cell != null) {
+            cell.grow(-THUMB_MARGIN / 2, -THUMB_MARGIN / 2);
+        }
+        return cell;
+    }
+
+    /**
+     * Gets the thumbnail painted at the given location.
+     * @param p the location within this panel
+     * @return the thumbnail at the location or <code>null</code> if there is
+     * none, e.g. if the location is within the margin between two thumbnails
+     */
+    public Thumbnail getThumbnailAt(final Point p) {
+        final int index = locationToIndex(p);
+        final Rectangle bounds = getThumbnailBounds(index);
+        return bounds != null && bounds.contains(p) ? getModel().getElementAt(index) : null;
+    }
+
     @Override
-    public java.awt.Dimension getMinimumSize() {
-        return new Dimension(getThumbSize() + THUMB_MARGIN * THUMB_MARGIN, getThumbSize() + THUMB_MARGIN + THUMB_MARGIN);
+    public String getToolTipText(MouseEvent evt) {
+        final Thumbnail thumbnail = getThumbnailAt(evt.getPoint());
+        return thumbnail != null ? thumbnail.getToolTipText() : null;
     }
 
     @Override
-    public java.awt.Dimension getPreferredSize() {
-        final java.awt.Insets insets = getInsets();
-        final int count = getComponentCount();
-        final FlowLayout layout = (FlowLayout)getLayout();
-        final int hgap = layout.getHgap();
-        final int vgap = layout.getVgap();
-        final int cols = getVisibleRect().width / (getThumbSize() + 10);
-
-        if (cols == 0) {
-            return getMinimumSize();
+    protected void processMouseEvent(MouseEvent evt) {
+        if (!selection.process(evt)) {
+            super.processMouseEvent(evt);
         }
+    }
 
-        final java.awt.Dimension d = new java.awt.Dimension(
-                cols * (getThumbSize() + hgap) + hgap,
-                (count / cols) * (getThumbSize() + vgap) + vgap);
-
-        // Dont forget the frame's insets
-        d.width += insets.left + insets.right;
-        d.height += insets.top + insets.bottom;
+    @Override
+    protected void processMouseMotionEvent(MouseEvent evt) {
+        if (!selection.process(evt)) {
+            super.processMouseMotionEvent(evt);
+        }
+    }
 
-        return d;
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        selection.paint(g);
     }
 }
@@ -0,0 +1,104 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import static com.tommybrettschneider.imageviewer.ui.thumbnail.ScrollableThumbnailPane.THUMB_MARGIN;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Composite;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+
+/**
+ * Paints the cells of the <code>ThumbnailPanel</code>. Triggers the background
+ * loading of a thumbnail's image the first time the thumbnail becomes visible.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ThumbnailRenderer extends JComponent implements ListCellRenderer<Thumbnail> {
+
+    private static final Color COLOR_SELECTED_THUMBNAIL = Color.decode("#B2DFEE");
+    private static final Composite ALPHACOMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
+
+    private JList<? extends Thumbnail> list;
+    private Thumbnail thumbnail;
+    private int index;
+    private boolean selected;
+
+    public ThumbnailRenderer() {
+        setOpaque(false);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends Thumbnail> list, Thumbnail value, int index, boolean isSelected, boolean cellHasFocus) {
+        this.list = list;
+        this.thumbnail = value;
+        this.index = index;
+        this.selected = isSelected;
+        return this;
+    }
+
+    @Override
+    protected void paintComponent(final Graphics g) {
+        if (thumbnail == null) {
+            return;
+        }
+        final Image img = thumbnail.getThumbnailImage();
+        if (img == null) {
+            thumbnail.load(list, index);
+        }
+        final int width = Thumbnail.getThumbnailWidth();
+        final int height = Thumbnail.getThumbnailHeight();
+        final Graphics2D g2d = (Graphics2D) g.create();
+        g2d.translate(THUMB_MARGIN / 2, THUMB_MARGIN / 2);
+        g2d.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
+        g2d.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
+        g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+
+        if (img != null) {
+            g2d.drawImage(img, (width - img.getWidth(null)) / 2, (height - img.getHeight(null)) / 2, null);
+        } else {
+            thumbnail.paintProxyImage(list, g2d);
+        }
+        g2d.setColor(Thumbnail.BORDER_COLOR);
+        g2d.drawRect(0, 0, width - 1, height - 1);
+
+        if (selected) {
+            g2d.setColor(COLOR_SELECTED_THUMBNAIL);
+            g2d.setComposite(ALPHACOMPOSITE);
+            g2d.fillRect(0, 0, width - 1, height - 1);
+        }
+        g2d.dispose();
+    }
+
+    // overridden for performance reasons, as recommended for cell renderers
+
+    @Override
+    public void validate() {
+    }
+
+    @Override
+    public void invalidate() {
+    }
+
+    @Override
+    public void revalidate() {
+    }
+
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+    }
+
+    @Override
+    protected void firePropertyChange(String propertyName, Object oldValue, Object newValue) {
+    }
+}
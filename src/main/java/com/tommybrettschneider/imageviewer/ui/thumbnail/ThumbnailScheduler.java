@@ -0,0 +1,153 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Schedules the loading of thumbnail images on a shared thread pool.
+ *
+ * Pending thumbnails are not served in the order they were requested but by
+ * their distance from the visible part of the grid, which is evaluated each
+ * time a worker picks the next job. Thumbnails outside of the prefetch window
+ * are dropped from the queue, so scrolling quickly through a large folder does
+ * not leave the visible rows waiting behind off-screen work.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ThumbnailScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailScheduler.class.getName());
+
+    private final ExecutorService executorService;
+    private final int parallelism;
+    private final Map<Thumbnail, Integer> pending = new HashMap<>();
+    private final Set<Thumbnail> running = new HashSet<>();
+    private int workers;
+    private int firstVisible;
+    private int lastVisible = -1;
+    private int firstInWindow;
+    private int lastInWindow = Integer.MAX_VALUE;
+
+    public ThumbnailScheduler(final ExecutorService executorService) {
+        this(executorService, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    /**
+     * @param executorService the pool to run the thumbnail jobs on
+     * @param parallelism the maximum number of thumbnails loaded at the same
+     * time, leaving the remaining threads of the pool to other work
+     */
+    public ThumbnailScheduler(final ExecutorService executorService, final int parallelism) {
+        this.executorService = executorService;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Requests the loading of a thumbnail's image. Requesting an already
+     * pending thumbnail only updates its position.
+     * @param thumbnail the thumbnail to load
+     * @param index the thumbnail's position within the grid
+     */
+    public synchronized void schedule(final Thumbnail thumbnail, final int index) {
+        if (running.contains(thumbnail) || !isInWindow(index)) {
+            return;
+        }
+        pending.put(thumbnail, index);
+        if (workers < parallelism) {
+            try {
+                executorService.execute(this::drain);
+                workers++;
+            } catch (RejectedExecutionException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Updates the visible part of the grid and the window around it within
+     * which thumbnails are loaded. Pending thumbnails outside of the window
+     * are cancelled.
+     * @param firstVisible index of the first visible thumbnail
+     * @param lastVisible index of the last visible thumbnail
+     * @param firstInWindow index of the first thumbnail to be prefetched
+     * @param lastInWindow index of the last thumbnail to be prefetched
+     */
+    public synchronized void setWindow(final int firstVisible, final int lastVisible, final int firstInWindow, final int lastInWindow) {
+        this.firstVisible = firstVisible;
+        this.lastVisible = lastVisible;
+        this.firstInWindow = firstInWindow;
+        this.lastInWindow = lastInWindow;
+        pending.values().removeIf(index -> !isInWindow(index));
+    }
+
+    /**
+     * Drops all pending thumbnails, e.g. when the grid shows another folder
+     * or has been reordered. Thumbnails currently being loaded are finished.
+     */
+    public synchronized void clear() {
+        pending.clear();
+    }
+
+    /**
+     * Gets the number of thumbnails waiting to be loaded.
+     * @return the number of pending thumbnails
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private boolean isInWindow(final int index) {
+        return index >= firstInWindow && index <= lastInWindow;
+    }
+
+    private int getDistance(final int index) {
+        if (index < firstVisible) {
+            return firstVisible - index;
+        }
+        return index > lastVisible ? index - lastVisible : 0;
+    }
+
+    /**
+     * Takes the pending thumbnail closest to the visible area.
+     */
+    private synchronized Thumbnail poll() {
+        Thumbnail next = null;
+        int nextDistance = Integer.MAX_VALUE;
+        for (Iterator<Map.Entry<Thumbnail, Integer>> it = pending.entrySet().iterator(); it.hasNext() && nextDistance > 0; ) {
+            final Map.Entry<Thumbnail, Integer> entry = it.next();
+            final int distance = getDistance(entry.getValue());
+            if (distance < nextDistance) {
+                next = entry.getKey();
+                nextDistance = distance;
+            }
+        }
+        if (next == null) {
+            workers--;
+        } else {
+            pending.remove(next);
+            running.add(next);
+        }
+        return next;
+    }
+
+    private synchronized void done(final Thumbnail thumbnail) {
+        running.remove(thumbnail);
+    }
+
+    private void drain() {
+        Thumbnail thumbnail;
+        while ((thumbnail = poll()) != null) {
+            try {
+                thumbnail.run();
+            } finally {
+                done(thumbnail);
+            }
+        }
+    }
+}
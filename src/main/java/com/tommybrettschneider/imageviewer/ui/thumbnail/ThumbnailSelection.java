@@ -1,155 +1,126 @@
 package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
-import com.tommybrettschneider.imageviewer.util.BaseMouseListener;
 import java.awt.AlphaComposite;
-import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Component;
 import java.awt.Composite;
-import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.logging.Logger;
-import javax.swing.JPanel;
-import javax.swing.Scrollable;
 import javax.swing.SwingUtilities;
 
-public class ThumbnailSelection extends JPanel implements Scrollable {
+/**
+ * Rubber band selection of the thumbnail grid. A band is started by pressing
+ * the left mouse button outside of any thumbnail; on release all thumbnails
+ * intersecting the band are selected.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ThumbnailSelection {
 
     private static final Logger LOGGER = Logger.getLogger(ThumbnailSelection.class.getName());
 
     private final static Color COLOR_SELECTED_RECTANGLE = Color.decode("#009ACD");
-    private final DrawSelectionListener drawSelectionListener;
-    private final Composite ALPHACOMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
-    private Rectangle selection;
+    private final static Composite ALPHACOMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
     private final ThumbnailPanel thumbnailPanel;
+    private Point startPoint;
+    private Point endPoint;
 
     public ThumbnailSelection(ThumbnailPanel thumbnailPanel) {
-        super(new BorderLayout(0, 0));
-        setOpaque(false);
-        setAutoscrolls(true);
         this.thumbnailPanel = thumbnailPanel;
-        add(this.thumbnailPanel, BorderLayout.CENTER);
-        drawSelectionListener = new DrawSelectionListener();
-        addMouseListener(drawSelectionListener);
-        addMouseMotionListener(drawSelectionListener);
     }
 
-    @Override
-    protected void paintChildren(Graphics g) {
-        super.paintChildren(g);
-        if (drawSelectionListener.getStartPoint() != null && drawSelectionListener.getEndPoint() != null) {
-            final int startX = drawSelectionListener.getStartPoint().x;
-            final int startY = drawSelectionListener.getStartPoint().y;
-            final int endX = drawSelectionListener.getEndPoint().x;
-            final int endY = drawSelectionListener.getEndPoint().y;
-            final int offsetX = Math.min(startX, endX);
-            final int offsetY = Math.min(startY, endY);
-            final int width = Math.max(startX, endX) - offsetX;
-            final int height = Math.max(startY, endY) - offsetY;
-            final Graphics2D g2d = (Graphics2D) g;
-            g2d.setColor(COLOR_SELECTED_RECTANGLE);
-            final Composite originalComposite = g2d.getComposite();
-            g2d.setComposite(ALPHACOMPOSITE);
-            g2d.fillRect(offsetX, offsetY, width, height);
-            g2d.setComposite(originalComposite);
-            g2d.drawRect(offsetX, offsetY, width, height);
+    /**
+     * Handles the mouse events belonging to a rubber band selection.
+     * @param e a mouse or mouse motion event of the thumbnail panel
+     * @return <code>true</code> if the event has been consumed by the selection
+     */
+    boolean process(MouseEvent e) {
+        switch (e.getID()) {
+            case MouseEvent.MOUSE_PRESSED:
+                if (SwingUtilities.isLeftMouseButton(e) && thumbnailPanel.getThumbnailAt(e.getPoint()) == null) {
+                    thumbnailPanel.requestFocusInWindow();
+                    startPoint = e.getPoint();
+                    return true;
+                }
+                return false;
+            case MouseEvent.MOUSE_DRAGGED:
+                if (startPoint != null) {
+                    final Rectangle oldBand = getBand();
+                    endPoint = e.getPoint();
+                    repaint(oldBand);
+                    thumbnailPanel.scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                    return true;
+                }
+                return false;
+            case MouseEvent.MOUSE_RELEASED:
+                if (startPoint != null) {
+                    endPoint = e.getPoint();
+                    select(getBand(), e.isControlDown() || e.isShiftDown());
+                    repaint(getBand());
+                    startPoint = null;
+                    endPoint = null;
+                    return true;
+                }
+                return false;
+            default:
+                return startPoint != null;
         }
     }
 
-    class DrawSelectionListener extends BaseMouseListener {
-
-        private Point startPoint;
-        private Point endPoint;
-
-        public Point getEndPoint() {
-            return endPoint;
-        }
-
-        public void setEndPoint(Point endPoint) {
-            this.endPoint = endPoint;
-        }
-
-        public Point getStartPoint() {
-            return startPoint;
-        }
-
-        public void setStartPoint(Point startPoint) {
-            this.startPoint = startPoint;
-        }
-
-        @Override
-        public void mouseDragged(MouseEvent e) {
-            endPoint = e.getPoint();
-            repaint();
-            Rectangle r = new Rectangle(e.getX(), e.getY(), 1, 1);
-            thumbnailPanel.scrollRectToVisible(r);
-        }
-
-        @Override
-        public void mousePressed(MouseEvent e) {
-            setStartPoint(e.getPoint());
-        }
-
-        @Override
-        public void mouseReleased(MouseEvent e) {
-            setEndPoint(e.getPoint());
-            final int offsetX = Math.min(drawSelectionListener.getStartPoint().x, drawSelectionListener.getEndPoint().x);
-            final int offsetY = Math.min(drawSelectionListener.getStartPoint().y, drawSelectionListener.getEndPoint().y);
-            final int width = Math.max(drawSelectionListener.getStartPoint().x, drawSelectionListener.getEndPoint().x) - offsetX;
-            final int height = Math.max(drawSelectionListener.getStartPoint().y, drawSelectionListener.getEndPoint().y) - offsetY;
-            selection = new Rectangle();
-            selection.setBounds(offsetX, offsetY, width, height);
-            LOGGER.info("selection contains " + getSelectedComponents().size() + " components");
-            setStartPoint(null);
-            setEndPoint(null);
-            repaint();
+    private void select(final Rectangle band, final boolean extend) {
+        if (!extend) {
+            thumbnailPanel.clearSelection();
         }
-    }
-
-    public Collection getSelectedComponents() {
-        Collection<Component> selectedComponents = new ArrayList<>();
-        Component[] comp = ((JPanel)getComponents()[0]).getComponents();
-        for (Component component : comp) {
-            ((Thumbnail)component).setSelected(false);
-            Rectangle r = component.getBounds();
-            if (selection != null && SwingUtilities.isRectangleContainingRectangle(selection, r)) {
-                selectedComponents.add(component);
-                ((Thumbnail)component).setSelected(true);
+        final int first = thumbnailPanel.locationToIndex(band.getLocation());
+        final int last = thumbnailPanel.locationToIndex(new Point(band.x + band.width, band.y + band.height));
+        int count = 0;
+        for (int i = Math.max(first, 0); first >= 0 && i <= last; i++) {
+            final Rectangle bounds = thumbnailPanel.getThumbnailBounds(i);
+            if (bounds != null && bounds.intersects(band)) {
+                thumbnailPanel.addSelectionInterval(i, i);
+                count++;
             }
         }
-        return selectedComponents;
-    }
-    
-    @Override
-    public Dimension getPreferredScrollableViewportSize() {
-        return getPreferredSize();
+        LOGGER.fine("selection contains " + count + " thumbnails");
     }
 
-    @Override
-    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
-        return thumbnailPanel.getThumbSize() + ScrollableThumbnailPane.THUMB_MARGIN;
-    }
-
-    @Override
-    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
-        int rowHeight = thumbnailPanel.getThumbSize() + ScrollableThumbnailPane.THUMB_MARGIN;
-        int numberOfVisibleRows = visibleRect.height / rowHeight;
-        return numberOfVisibleRows * rowHeight;
+    private Rectangle getBand() {
+        if (startPoint == null || endPoint == null) {
+            return null;
+        }
+        final int offsetX = Math.min(startPoint.x, endPoint.x);
+        final int offsetY = Math.min(startPoint.y, endPoint.y);
+        return new Rectangle(offsetX, offsetY,
+                Math.max(startPoint.x, endPoint.x) - offsetX,
+                Math.max(startPoint.y, endPoint.y) - offsetY);
     }
 
-    @Override
-    public boolean getScrollableTracksViewportWidth() {
-        return Boolean.TRUE;       
+    private void repaint(final Rectangle oldBand) {
+        final Rectangle band = getBand();
+        Rectangle dirty = oldBand != null && band != null ? oldBand.union(band) : (band != null ? band : oldBand);
+        if (dirty != null) {
+            dirty = new Rectangle(dirty.x, dirty.y, dirty.width + 1, dirty.height + 1);
+            thumbnailPanel.repaint(dirty);
+        }
     }
 
-    @Override
-    public boolean getScrollableTracksViewportHeight() {
-        return Boolean.FALSE;
+    /**
+     * Paints the band of a running selection.
+     * @param g the graphics of the thumbnail panel
+     */
+    void paint(Graphics g) {
+        final Rectangle band = getBand();
+        if (band != null) {
+            final Graphics2D g2d = (Graphics2D) g.create();
+            g2d.setColor(COLOR_SELECTED_RECTANGLE);
+            g2d.setComposite(ALPHACOMPOSITE);
+            g2d.fillRect(band.x, band.y, band.width, band.height);
+            g2d.setComposite(AlphaComposite.SrcOver);
+            g2d.drawRect(band.x, band.y, band.width, band.height);
+            g2d.dispose();
+        }
     }
 }
\ No newline at end of file
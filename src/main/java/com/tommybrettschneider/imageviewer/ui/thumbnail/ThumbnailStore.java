@@ -0,0 +1,293 @@
+package com.tommybrettschneider.imageviewer.ui.thumbnail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+
+/**
+ * Persistent on-disk store for already rendered thumbnails.
+ *
+ * Thumbnails are kept per thumbnail size and keyed by the identity of their
+ * source (see {@link Thumbnail#getCacheKey()}), so revisiting a folder only
+ * reads the small pre-encoded images instead of decoding the originals again.
+ *
+ * The store is bounded by a budget in bytes, which defaults to 256 MB and can
+ * be set via the <code>imageviewer.thumbnailstore.budget</code> system
+ * property. Once the stored thumbnails exceed it, the least recently used ones
+ * are deleted in the background until a quarter of the budget is free again.
+ * A thumbnail's use is recorded as the modification time of its file, since
+ * access times are often not maintained by the file system.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ThumbnailStore {
+
+    private static final Logger LOGGER = Logger.getLogger(ThumbnailStore.class.getName());
+
+    private static final String PROPERTY_DIRECTORY = "imageviewer.thumbnailstore.dir";
+    private static final String PROPERTY_BUDGET = "imageviewer.thumbnailstore.budget";
+    private static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+    /**
+     * Interval within which repeated reads of a thumbnail are not recorded again.
+     */
+    private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FORMAT_OPAQUE = "jpg";
+    private static final String FORMAT_TRANSLUCENT = "png";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static ThumbnailStore thumbnailStore;
+
+    public static final synchronized ThumbnailStore getInstance() {
+        if (thumbnailStore == null) {
+            final String directory = System.getProperty(PROPERTY_DIRECTORY);
+            thumbnailStore = new ThumbnailStore(directory != null
+                    ? new File(directory)
+                    : new File(System.getProperty("user.home"), ".imageviewer" + File.separator + "thumbnails"));
+        }
+        return thumbnailStore;
+    }
+
+    private final File directory;
+    private final long budget;
+    private final ExecutorService pruner;
+    // bytes stored, -1 until the store has been counted
+    private long size = -1;
+    private long addedWhilePruning;
+    private boolean pruning;
+
+    public ThumbnailStore(final File directory) {
+        this(directory, getDefaultBudget());
+    }
+
+    public ThumbnailStore(final File directory, final long budget) {
+        this.directory = directory;
+        this.budget = budget;
+        this.pruner = Executors.newSingleThreadExecutor(r -> {
+            final Thread t = new Thread(r, "thumbnail-store-pruner");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Gets the root directory of this store.
+     * @return the directory the thumbnails are written to
+     */
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Gets the budget of this store.
+     * @return the number of bytes the stored thumbnails may occupy
+     */
+    public long getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Looks up a previously stored thumbnail.
+     * @param key the cache key of the thumbnail's source
+     * @param size the thumbnail size the image was rendered for
+     * @return the stored thumbnail or <code>null</code> if there is none
+     */
+    public BufferedImage get(final String key, final int size) {
+        final String hash = hash(key);
+        for (String format : new String[]{FORMAT_OPAQUE, FORMAT_TRANSLUCENT}) {
+            final File file = getFile(hash, size, format);
+            if (file.isFile()) {
+                try {
+                    touch(file);
+                    return ImageIO.read(file);
+                } catch (IOException e) {
+                    LOGGER.warning(e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a rendered thumbnail. Opaque images are written as JPEG, images
+     * with an alpha channel as PNG.
+     * @param key the cache key of the thumbnail's source
+     * @param size the thumbnail size the image was rendered for
+     * @param img the rendered thumbnail
+     */
+    public void put(final String key, final int size, final BufferedImage img) {
+        final String format = img.getColorModel().hasAlpha() ? FORMAT_TRANSLUCENT : FORMAT_OPAQUE;
+        final File file = getFile(hash(key), size, format);
+        final File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            LOGGER.warning("Unable to create thumbnail store directory " + parent.getAbsolutePath());
+            return;
+        }
+        File tmp = null;
+        try {
+            tmp = File.createTempFile("thumb", TEMP_SUFFIX, parent);
+            if (ImageIO.write(img, format, tmp)) {
+                final long replaced = file.length();
+                final long written = tmp.length();
+                move(tmp, file);
+                added(written - replaced);
+            }
+        } catch (IOException e) {
+            LOGGER.warning(e.getMessage());
+        } finally {
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Records the use of a stored thumbnail for pruning.
+     */
+    private static void touch(final File file) {
+        final long now = System.currentTimeMillis();
+        if (now - file.lastModified() > TOUCH_INTERVAL_MILLIS && !file.setLastModified(now)) {
+            LOGGER.fine("Unable to touch " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Accounts for written bytes and starts pruning if the store is over its
+     * budget or has not been counted yet.
+     */
+    private synchronized void added(final long bytes) {
+        if (size >= 0) {
+            size += bytes;
+        }
+        if (pruning) {
+            addedWhilePruning += bytes;
+        } else if (size < 0 || size > budget) {
+            pruning = true;
+            addedWhilePruning = 0;
+            pruner.execute(this::prune);
+        }
+    }
+
+    /**
+     * Counts the stored thumbnails and deletes the least recently used ones
+     * while the store exceeds its budget.
+     */
+    private void prune() {
+        final List<StoredFile> files = new ArrayList<>();
+        long total = 0;
+        try {
+            if (directory.isDirectory()) {
+                Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                        // thumbnails being written are left alone
+                        if (attrs.isRegularFile() && !file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                            files.add(new StoredFile(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            for (StoredFile file : files) {
+                total += file.size;
+            }
+            if (total > budget) {
+                files.sort(Comparator.comparingLong(file -> file.lastUsed));
+                final long target = budget - budget / 4;
+                for (int i = 0; i < files.size() && total > target; i++) {
+                    final StoredFile file = files.get(i);
+                    try {
+                        if (Files.deleteIfExists(file.path)) {
+                            total -= file.size;
+                        }
+                    } catch (IOException e) {
+                        LOGGER.fine(e.getMessage());
+                    }
+                }
+                LOGGER.fine("Pruned thumbnail store to " + total + " bytes");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning(e.getMessage());
+        } finally {
+            synchronized (this) {
+                size = total + addedWhilePruning;
+                pruning = false;
+            }
+        }
+    }
+
+    private static final class StoredFile {
+
+        private final Path path;
+        private final long size;
+        private final long lastUsed;
+
+        StoredFile(final Path path, final long size, final long lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static long getDefaultBudget() {
+        final String budget = System.getProperty(PROPERTY_BUDGET);
+        if (budget != null) {
+            try {
+                return Long.parseLong(budget.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + PROPERTY_BUDGET + ": " + budget);
+            }
+        }
+        return DEFAULT_BUDGET;
+    }
+
+    private File getFile(final String hash, final int size, final String format) {
+        return new File(directory, size + File.separator + hash.substring(0, 2) + File.separator + hash + "." + format);
+    }
+
+    private static void move(final File source, final File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String hash(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            final char[] chars = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
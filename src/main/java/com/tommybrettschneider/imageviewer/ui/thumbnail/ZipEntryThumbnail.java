@@ -1,30 +1,30 @@
 package com.tommybrettschneider.imageviewer.ui.thumbnail;
 
+import com.tommybrettschneider.imageviewer.base.Archive;
 import static com.tommybrettschneider.imageviewer.ui.thumbnail.Thumbnail.getThumbnailWidth;
+import java.awt.Component;
 import java.awt.Graphics2D;
 import java.awt.datatransfer.DataFlavor;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.ExecutorService;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import javax.imageio.ImageIO;
 import javax.imageio.stream.ImageInputStream;
 import javax.swing.ImageIcon;
-import org.apache.commons.io.IOUtils;
 
 public final class ZipEntryThumbnail extends Thumbnail<ZipEntry> {
 
     private static final ImageIcon icon = new ImageIcon("d:\\image.gif");
-    private final ZipFile zipFile;
+    private final Archive archive;
 
-    public ZipEntryThumbnail(final ZipEntry zipEntry, final ExecutorService threadPool, final ZipFile zipFile) {
-        super(zipEntry, threadPool);
-        this.zipFile = zipFile;
-    }
-
-    private ZipFile getZipFile() {
-        return zipFile;
+    /**
+     * Constructor.
+     * @param zipEntry the entry to show
+     * @param scheduler the scheduler loading the thumbnail
+     * @param archive the archive containing the entry, which reads its content
+     */
+    public ZipEntryThumbnail(final ZipEntry zipEntry, final ThumbnailScheduler scheduler, final Archive archive) {
+        super(zipEntry, scheduler);
+        this.archive = archive;
     }
 
     @Override
@@ -33,18 +33,18 @@ public final class ZipEntryThumbnail extends Thumbnail<ZipEntry> {
     }
     
     @Override
-    public void paintProxyImage(Graphics2D g2d) {
-        g2d.drawImage(icon.getImage(), (getThumbnailWidth() - icon.getIconWidth()) / 2, (getThumbnailHeight() - icon.getIconHeight()) / 2, this);
+    public void paintProxyImage(Component c, Graphics2D g2d) {
+        g2d.drawImage(icon.getImage(), (getThumbnailWidth() - icon.getIconWidth()) / 2, (getThumbnailHeight() - icon.getIconHeight()) / 2, c);
     }
 
     @Override
     public ImageInputStream getImageInputStream() throws IOException {
-        return ImageIO.createImageInputStream(getInputStream());
+        return archive.getImageInputStream(getSource());
     }
     
     @Override
     public InputStream getInputStream() throws IOException {
-        return IOUtils.toBufferedInputStream(getZipFile().getInputStream(getSource()));
+        return archive.getInputStream(getSource());
     }
 
     @Override
@@ -56,4 +56,28 @@ public final class ZipEntryThumbnail extends Thumbnail<ZipEntry> {
     public long getFileSize() {
         return getSource().getSize();
     }
+
+    @Override
+    public long getLastModified() {
+        return getSource().getTime();
+    }
+
+    @Override
+    public boolean isContainer() {
+        return archive.isContainer(getSource());
+    }
+
+    /**
+     * Opens the entry if it is a container itself.
+     * @return the nested container
+     * @throws IOException if the entry is no container or cannot be read
+     */
+    public Archive openContainer() throws IOException {
+        return archive.openContainer(getSource());
+    }
+
+    @Override
+    public String getCacheKey() {
+        return archive.getName() + '!' + getSource().getName() + '|' + getSource().getCrc() + '|' + getSource().getTime() + '|' + getSource().getSize();
+    }
 }
@@ -0,0 +1,157 @@
+package com.tommybrettschneider.imageviewer.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * An <code>ImageInputStream</code> reading a file, or a region of it such as
+ * an archive entry, with positional reads of a <code>FileChannel</code>.
+ * Unlike a mapping the file is released as soon as the stream is closed, so it
+ * can be deleted, renamed or replaced right away on Windows, and a file
+ * truncated while it is read merely ends early.
+ *
+ * @author Tommy Brettschneider
+ */
+public class ChannelImageInputStream extends ImageInputStreamImpl {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final FileChannel channel;
+    private final long offset;
+    private final long length;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long bufferPos;
+
+    /**
+     * Constructor.
+     * @param channel the channel to read, closed with this stream
+     */
+    public ChannelImageInputStream(final FileChannel channel) {
+        this(channel, 0, -1);
+    }
+
+    /**
+     * Constructor for a stream on a region of a file.
+     * @param channel the channel to read, closed with this stream
+     * @param offset the position of the region in the file
+     * @param length the length of the region or -1 for the rest of the file
+     */
+    public ChannelImageInputStream(final FileChannel channel, final long offset, final long length) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+        buffer.limit(0);
+    }
+
+    /**
+     * Opens a stream on the given file.
+     * @param file the file to read
+     * @return the stream
+     * @throws IOException if the file cannot be opened
+     */
+    public static ChannelImageInputStream open(final File file) throws IOException {
+        return new ChannelImageInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (!fill()) {
+            return -1;
+        }
+        return buffer.get((int) (streamPos++ - bufferPos)) & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        bitOffset = 0;
+        if (len >= BUFFER_SIZE && !isBuffered()) {
+            // large reads go directly into the caller's array
+            final int count = (int) Math.min(len, remaining());
+            if (count <= 0) {
+                return -1;
+            }
+            final int n = channel.read(ByteBuffer.wrap(b, off, count), offset + streamPos);
+            if (n > 0) {
+                streamPos += n;
+            }
+            return n;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int n = (int) Math.min(len, bufferPos + buffer.limit() - streamPos);
+        buffer.position((int) (streamPos - bufferPos));
+        buffer.get(b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        if (length >= 0) {
+            return length;
+        }
+        try {
+            return channel.size() - offset;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        channel.close();
+    }
+
+    private boolean isBuffered() {
+        return streamPos >= bufferPos && streamPos < bufferPos + buffer.limit();
+    }
+
+    /**
+     * Makes sure the byte at the stream position is buffered.
+     * @return <code>false</code> at the end of the file
+     */
+    private boolean fill() throws IOException {
+        if (isBuffered()) {
+            return true;
+        }
+        buffer.clear();
+        bufferPos = streamPos;
+        final long remaining = remaining();
+        if (remaining <= 0) {
+            buffer.limit(0);
+            return false;
+        }
+        if (remaining < BUFFER_SIZE) {
+            buffer.limit((int) remaining);
+        }
+        int n = 0;
+        while (n == 0) {
+            n = channel.read(buffer, offset + bufferPos);
+        }
+        buffer.flip();
+        return n > 0;
+    }
+
+    /**
+     * Gets the number of bytes left in the region, unbounded for a stream on
+     * the rest of the file, which ends with the file.
+     */
+    private long remaining() {
+        return length >= 0 ? length - streamPos : Long.MAX_VALUE;
+    }
+}
@@ -2,7 +2,6 @@ package com.tommybrettschneider.imageviewer.util;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.filechooser.FileSystemView;
@@ -22,20 +21,6 @@ public class Files {
         return file.isFile() && FilenameUtils.isExtension(file.getName(), FILE_EXTENSION_ZIP);
     }
 
-    /**
-     * Returns the size in bytes of the given file or directory.
-     *
-     * @param file a File object representing a file or directory.
-     * @return the size of the given file or directory as a long value. Returns
-     * -1 if an I/O error occurs.
-     */
-    public static long getFileSize(File file) {
-        if (file.isDirectory()) {
-            return Arrays.stream(file.listFiles()).parallel().mapToLong(f -> f.length()).sum();
-        }
-        return file.length();
-    }
-
     /**
      * @param file
      * @return
@@ -0,0 +1,244 @@
+package com.tommybrettschneider.imageviewer.util;
+
+import java.io.ByteArrayOutputStream;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Natural, locale aware sort key of a file name, so that IMG_2.jpg sorts
+ * before IMG_10.jpg and accented names sort where the user's language expects
+ * them.
+ *
+ * The key is built once per name into a compact byte array and compared as
+ * unsigned bytes, so sorting costs no collation per comparison. The name is
+ * split into runs of digits and runs of other characters. Digit runs are
+ * encoded by their numeric value, other runs by their primary collation
+ * weights, each weight taking a single byte in most cases. Names equal in
+ * these are then ordered by the accents and case of their runs and the
+ * leading zeros of their numbers, e.g. img_2 before IMG_2 and IMG_2 before
+ * IMG_02.
+ *
+ * Keys are built with the collator of the default locale. The weights of the
+ * most recent text runs are remembered per thread, since names in a folder
+ * tend to share them, e.g. IMG_ and .jpg.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class NaturalSortKey implements Comparable<NaturalSortKey> {
+
+    private static final int END = 0;
+    private static final int NUMBER = 1;
+    private static final int TEXT = 2;
+    private static final int MAX_CACHED_RUNS = 1024;
+
+    // collators are not thread-safe
+    private static final ThreadLocal<KeyBuilder> BUILDERS = ThreadLocal.withInitial(KeyBuilder::new);
+
+    private final byte[] key;
+
+    private NaturalSortKey(final byte[] key) {
+        this.key = key;
+    }
+
+    public static NaturalSortKey of(final String name) {
+        return new NaturalSortKey(getKey(name));
+    }
+
+    /**
+     * Builds the natural sort key of a name.
+     * @param name the name
+     * @return the key, to be compared with {@link #compare(byte[], byte[])}
+     */
+    public static byte[] getKey(final String name) {
+        return BUILDERS.get().build(name);
+    }
+
+    /**
+     * Builds keys with the collator of one thread.
+     */
+    private static final class KeyBuilder {
+
+        private final Collator collator = Collator.getInstance();
+        private final Map<String, byte[][]> runs = new HashMap<>();
+
+        KeyBuilder() {
+            collator.setStrength(Collator.TERTIARY);
+        }
+
+        byte[] build(final String name) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(name.length() * 2 + 8);
+            final ByteArrayOutputStream ties = new ByteArrayOutputStream(name.length() + 8);
+            int start = 0;
+            while (start < name.length()) {
+                final boolean digits = Character.isDigit(name.charAt(start));
+                int end = start + 1;
+                while (end < name.length() && Character.isDigit(name.charAt(end)) == digits) {
+                    end++;
+                }
+                if (digits) {
+                    out.write(NUMBER);
+                    writeNumber(out, name, start, end);
+                    writeLength(ties, end - start);
+                } else {
+                    final byte[][] run = getRun(name.substring(start, end));
+                    out.write(TEXT);
+                    out.write(run[0], 0, run[0].length);
+                    ties.write(run[1], 0, run[1].length);
+                    ties.write(0);
+                }
+                start = end;
+            }
+            out.write(END);
+            final byte[] tie = ties.toByteArray();
+            out.write(tie, 0, tie.length);
+            return out.toByteArray();
+        }
+
+        /**
+         * Gets the encoded primary weights of a text run, terminated, and its
+         * encoded secondary and tertiary weights.
+         */
+        private byte[][] getRun(final String run) {
+            byte[][] encoded = runs.get(run);
+            if (encoded == null) {
+                final byte[] weights = collator.getCollationKey(run).toByteArray();
+                // the primary weights end with the first zero weight, whose code terminates them
+                int secondary = 0;
+                while (secondary + 1 < weights.length && (weights[secondary] != 0 || weights[secondary + 1] != 0)) {
+                    secondary += 2;
+                }
+                final ByteArrayOutputStream primary = new ByteArrayOutputStream(run.length() + 1);
+                writeWeights(primary, weights, 0, Math.min(secondary + 2, weights.length));
+                if (secondary + 1 >= weights.length) {
+                    primary.write(1);
+                }
+                final ByteArrayOutputStream others = new ByteArrayOutputStream(run.length() * 2 + 1);
+                writeWeights(others, weights, secondary + 2, weights.length);
+                encoded = new byte[][]{primary.toByteArray(), others.toByteArray()};
+                if (runs.size() >= MAX_CACHED_RUNS) {
+                    runs.clear();
+                }
+                runs.put(run, encoded);
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * Compares two keys byte by byte as unsigned values; a key that is a
+     * prefix of the other comes first.
+     * @param a a key
+     * @param b another key
+     * @return a negative number, zero or a positive number if <code>a</code>
+     * sorts before, equal to or after <code>b</code>
+     */
+    public static int compare(final byte[] a, final byte[] b) {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xFF) - (b[i] & 0xFF);
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Sorts elements by the natural sort keys of their names, building each
+     * key once.
+     * @param <T> the type of the elements
+     * @param elements the elements to sort
+     * @param name gets the name of an element
+     * @return the elements in natural order of their names
+     */
+    public static <T> List<T> sort(final Collection<? extends T> elements, final Function<? super T, String> name) {
+        final List<Keyed<T>> keyed = new ArrayList<>(elements.size());
+        for (T element : elements) {
+            keyed.add(new Keyed<>(element, getKey(name.apply(element))));
+        }
+        keyed.sort((a, b) -> compare(a.key, b.key));
+        final List<T> sorted = new ArrayList<>(keyed.size());
+        for (Keyed<T> k : keyed) {
+            sorted.add(k.element);
+        }
+        return sorted;
+    }
+
+    private static final class Keyed<T> {
+
+        private final T element;
+        private final byte[] key;
+
+        Keyed(final T element, final byte[] key) {
+            this.element = element;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Writes a run of digits as the number of its significant digits
+     * followed by the digits, two per byte; numbers with fewer digits are
+     * smaller.
+     */
+    private static void writeNumber(final ByteArrayOutputStream out, final String name, final int start, final int end) {
+        int first = start;
+        while (first < end && Character.digit(name.charAt(first), 10) == 0) {
+            first++;
+        }
+        writeLength(out, end - first);
+        for (int i = first; i < end; i += 2) {
+            final int high = Character.digit(name.charAt(i), 10);
+            final int low = i + 1 < end ? Character.digit(name.charAt(i + 1), 10) : 0;
+            out.write(high << 4 | low);
+        }
+    }
+
+    private static void writeLength(final ByteArrayOutputStream out, final int length) {
+        if (length < 0xFF) {
+            out.write(length);
+        } else {
+            out.write(0xFF);
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+        }
+    }
+
+    /**
+     * Writes the 16 bit weights of a collation key. A weight below 0xFE takes
+     * one byte, larger ones three, which keeps the order of the weights.
+     */
+    private static void writeWeights(final ByteArrayOutputStream out, final byte[] weights, final int from, final int to) {
+        for (int i = from; i + 1 < to; i += 2) {
+            final int weight = (weights[i] & 0xFF) << 8 | (weights[i + 1] & 0xFF);
+            if (weight < 0xFE) {
+                out.write(weight + 1);
+            } else {
+                out.write(0xFF);
+                out.write(weight >>> 8);
+                out.write(weight);
+            }
+        }
+    }
+
+    @Override
+    public int compareTo(final NaturalSortKey other) {
+        return compare(key, other.key);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof NaturalSortKey && Arrays.equals(key, ((NaturalSortKey) obj).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(key);
+    }
+}
@@ -7,11 +7,12 @@ import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -87,15 +88,27 @@ public class UIUtils {
         return (evt.getKeyCode() == KeyEvent.VK_ESCAPE);
     }
     
+    /**
+     * Reads the size of an image from its header, without decoding the image
+     * or its metadata. The stream is not closed.
+     * @param iis the image
+     * @return the size of the image or <code>null</code> if no reader is
+     * available for it or its header cannot be read
+     */
     public static Dimension getImageSize(ImageInputStream iis) {
+        final Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        final ImageReader reader = readers.next();
         try {
-            BufferedImage readImage = ImageIO.read(iis);
-            int h = readImage.getHeight();
-            int w = readImage.getWidth();
-            return new Dimension(w, h);
-        } catch (Exception ex) {
-            
+            reader.setInput(iis, true, true);
+            return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.fine(ex.getMessage());
+            return null;
+        } finally {
+            reader.dispose();
         }
-        return null;
     }
 }
\ No newline at end of file
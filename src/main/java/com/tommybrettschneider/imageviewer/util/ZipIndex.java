@@ -0,0 +1,389 @@
+package com.tommybrettschneider.imageviewer.util;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import javax.imageio.stream.ImageInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * Index of a zip archive built from its central directory. Entries stored
+ * without compression - as images usually are, since compressing them again
+ * gains nothing - are read directly at their offset with positional reads,
+ * without going through a <code>ZipInputStream</code>. Compressed entries are
+ * inflated with an inflater of their own, so any number of threads can read
+ * different entries at the same time.
+ *
+ * The index only keeps the central directory; every stream opens the archive
+ * on its own and releases it when closed, so the archive is not held open, and
+ * locked on Windows, while it is merely shown.
+ *
+ * ZIP64 archives are not supported.
+ *
+ * @author Tommy Brettschneider
+ */
+public final class ZipIndex {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int INFLATER_BUFFER_SIZE = 8192;
+
+    private final File file;
+    private final Map<String, Entry> entries;
+
+    /**
+     * An entry of the archive as described by the central directory.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long dosTime;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        private Entry(final String name, final int method, final long crc, final long dosTime,
+                final long compressedSize, final long size, final long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.dosTime = dosTime;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the compression method, <code>ZipEntry.STORED</code> or <code>ZipEntry.DEFLATED</code>
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isStored() {
+            return method == ZipEntry.STORED && compressedSize == size;
+        }
+
+        /**
+         * Creates a <code>ZipEntry</code> describing this entry, as listed by
+         * <code>java.util.zip.ZipFile</code>.
+         * @return the zip entry
+         */
+        public ZipEntry toZipEntry() {
+            final ZipEntry entry = new ZipEntry(name);
+            if (method == ZipEntry.STORED || method == ZipEntry.DEFLATED) {
+                entry.setMethod(method);
+            }
+            entry.setCrc(crc);
+            entry.setSize(size);
+            entry.setCompressedSize(compressedSize);
+            final long time = toJavaTime(dosTime);
+            if (time >= 0) {
+                entry.setTime(time);
+            }
+            return entry;
+        }
+    }
+
+    private ZipIndex(final File file, final Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the central directory of the given archive.
+     *
+     * @param file the archive
+     * @return the index of the archive
+     * @throws IOException if the archive cannot be read or is not supported
+     */
+    public static ZipIndex open(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new ZipIndex(file, readCentralDirectory(file, channel));
+        }
+    }
+
+    private static Map<String, Entry> readCentralDirectory(final File file, final FileChannel channel) throws IOException {
+        final long archiveSize = channel.size();
+        final long tailOffset = Math.max(0, archiveSize - END_SIZE - MAX_COMMENT_SIZE);
+        final ByteBuffer tail = read(channel, tailOffset, (int) (archiveSize - tailOffset), "end of central directory", file);
+        final int end = findEnd(tail);
+        if (end < 0) {
+            throw new ZipException("No end of central directory found in " + file);
+        }
+        final int count = unsignedShort(tail, end + 10);
+        final long directorySize = unsignedInt(tail, end + 12);
+        final long offset = unsignedInt(tail, end + 16);
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new IOException("ZIP64 archives are not indexed: " + file);
+        }
+        if (offset > tailOffset + end - directorySize || directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Truncated central directory in " + file);
+        }
+        final ByteBuffer buffer = read(channel, offset, (int) directorySize, "central directory", file);
+        final Map<String, Entry> entries = new LinkedHashMap<>(count * 2);
+        long pos = 0;
+        for (int i = 0; i < count; i++) {
+            checkBounds(buffer, pos, CENTRAL_HEADER_SIZE, "central directory", file);
+            if (buffer.getInt((int) pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Corrupt central directory in " + file);
+            }
+            final int header = (int) pos;
+            final int method = unsignedShort(buffer, header + 10);
+            final long dosTime = unsignedInt(buffer, header + 12);
+            final long crc = unsignedInt(buffer, header + 16);
+            final long compressedSize = unsignedInt(buffer, header + 20);
+            final long size = unsignedInt(buffer, header + 24);
+            final int nameLength = unsignedShort(buffer, header + 28);
+            final int extraLength = unsignedShort(buffer, header + 30);
+            final int commentLength = unsignedShort(buffer, header + 32);
+            final long localHeaderOffset = unsignedInt(buffer, header + 42);
+            checkBounds(buffer, pos + CENTRAL_HEADER_SIZE, nameLength, "central directory", file);
+            final byte[] name = new byte[nameLength];
+            final ByteBuffer names = buffer.duplicate();
+            names.position(header + CENTRAL_HEADER_SIZE);
+            names.get(name);
+            final String entryName = new String(name, StandardCharsets.UTF_8);
+            entries.put(entryName, new Entry(entryName, method, crc, dosTime, compressedSize, size, localHeaderOffset));
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Reads a region of the archive.
+     */
+    private static ByteBuffer read(final FileChannel channel, final long pos, final int length, final String region,
+            final File file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0) {
+                throw new ZipException("Truncated " + region + " in " + file);
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Checks that a region lies within the data read, so a corrupt or
+     * truncated archive fails with a <code>ZipException</code> rather than a
+     * buffer exception.
+     */
+    private static void checkBounds(final ByteBuffer buffer, final long pos, final long length, final String region,
+            final File file) throws ZipException {
+        if (pos < 0 || length < 0 || pos > buffer.limit() - length) {
+            throw new ZipException("Truncated " + region + " in " + file);
+        }
+    }
+
+    /**
+     * Finds the end of central directory record, which is followed by a
+     * comment of at most 64 KB.
+     */
+    private static int findEnd(final ByteBuffer buffer) {
+        final int last = buffer.limit() - END_SIZE;
+        for (int pos = last; pos >= Math.max(0, last - MAX_COMMENT_SIZE); pos--) {
+            if (buffer.getInt(pos) == END_SIGNATURE) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the entries in the order of the central directory
+     */
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    public Entry getEntry(final String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Opens an image stream on an entry stored without compression, reading
+     * the entry's bytes in place.
+     *
+     * @param name the name of the entry
+     * @return the stream, to be closed by the caller, or <code>null</code> if
+     * there is no such entry or it is compressed
+     * @throws IOException if the archive cannot be read or the entry's local
+     * header is corrupt
+     */
+    public ImageInputStream openStored(final String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null || !entry.isStored()) {
+            return null;
+        }
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new ChannelImageInputStream(channel, getDataOffset(entry, channel), entry.compressedSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a stream on the uncompressed content of an entry.
+     *
+     * @param name the name of the entry
+     * @return the stream
+     * @throws IOException if there is no such entry or it is compressed with
+     * a method other than deflate
+     */
+    public InputStream getInputStream(final String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new FileNotFoundException(name + " in " + file);
+        }
+        if (entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + " of " + name + " in " + file);
+        }
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        final InputStream data;
+        try {
+            channel.position(getDataOffset(entry, channel));
+            data = new BoundedInputStream(Channels.newInputStream(channel), entry.compressedSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return entry.method == ZipEntry.STORED ? data : new EntryInflaterInputStream(data, entry.size);
+    }
+
+    /**
+     * Gets the offset of the raw, possibly compressed, bytes of an entry.
+     */
+    private long getDataOffset(final Entry entry, final FileChannel channel) throws IOException {
+        final String region = "local header of " + entry.name;
+        if (entry.localHeaderOffset > channel.size() - LOCAL_HEADER_SIZE) {
+            throw new ZipException("Truncated " + region + " in " + file);
+        }
+        final ByteBuffer header = read(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE, region, file);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Corrupt local header of " + entry.name + " in " + file);
+        }
+        // the local extra field may differ from the one in the central directory
+        final long data = entry.localHeaderOffset + LOCAL_HEADER_SIZE + unsignedShort(header, 26) + unsignedShort(header, 28);
+        if (data > channel.size() - entry.compressedSize) {
+            throw new ZipException("Truncated entry " + entry.name + " in " + file);
+        }
+        return data;
+    }
+
+    /**
+     * Converts an MS-DOS date and time into milliseconds since the epoch.
+     * @return the time or -1 if the DOS time is invalid
+     */
+    private static long toJavaTime(final long dosTime) {
+        try {
+            return LocalDateTime.of((int) ((dosTime >> 25) & 0x7F) + 1980, (int) ((dosTime >> 21) & 0x0F),
+                    (int) ((dosTime >> 16) & 0x1F), (int) ((dosTime >> 11) & 0x1F), (int) ((dosTime >> 5) & 0x3F),
+                    (int) ((dosTime << 1) & 0x3E)).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Inflates a raw deflate stream with its own inflater, which is released
+     * when the stream is closed.
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private final long size;
+        private boolean eof;
+        private boolean closed;
+
+        EntryInflaterInputStream(final InputStream in, final long size) {
+            super(in, new Inflater(true), (int) Math.max(512, Math.min(INFLATER_BUFFER_SIZE, size)));
+            this.size = size;
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of zip entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                // the inflater needs one extra dummy byte after a raw deflate stream
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (closed) {
+                return 0;
+            }
+            final long remaining = size - inf.getBytesWritten();
+            return remaining > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                super.close();
+                inf.end();
+            }
+        }
+    }
+
+    private static int unsignedShort(final ByteBuffer buffer, final int pos) {
+        return buffer.getShort(pos) & 0xFFFF;
+    }
+
+    private static long unsignedInt(final ByteBuffer buffer, final int pos) {
+        return buffer.getInt(pos) & 0xFFFFFFFFL;
+    }
+}